@@ -0,0 +1,161 @@
+package com.example.knowledgesystem.ratelimit;
+
+import com.example.utils.ratelimitutils.FixedWindowRateLimiter;
+import com.example.utils.ratelimitutils.KeyedRateLimiter;
+import com.example.utils.ratelimitutils.LeakyBucketRateLimiter;
+import com.example.utils.ratelimitutils.PackedRateLimitAlgorithm;
+import com.example.utils.ratelimitutils.RateLimiter;
+import com.example.utils.ratelimitutils.SlidingWindowRateLimiter;
+import com.example.utils.ratelimitutils.TokenBucketRateLimiter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 执行 @RateLimited 的拦截器
+ * 每个处理方法第一次被请求时解析注解、创建限流器和 key 提取函数，缓存在以 Method 为 key 的 ConcurrentHashMap 中，
+ * 之后每个请求只有一次 Map 查找加一次 tryAcquire（按 key 限流时再加一次 key 的哈希和查表），不解析注解、不创建对象。
+ * 令牌桶、漏桶、固定窗口以及按 key 限流都是无锁的 CAS；整个接口共用的滑动窗口是 synchronized 的，所有请求串行通过同一个监视器。
+ * 没有标注的方法也缓存一个直接放行的结果。
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+    private static final int SLIDING_WINDOW_BUCKETS = 10; // 滑动窗口使用计数模式，内存与限额无关
+    private static final int PACKED_SLIDING_WINDOW_MAX = (1 << 20) - 1; // 按 key 的滑动窗口打包状态中计数的上限
+
+    private static final Guard UNLIMITED = request -> 0;
+
+    private final Map<Method, Guard> guards = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        Guard guard = guards.get(handlerMethod.getMethod());
+        if (guard == null) {
+            guard = guards.computeIfAbsent(handlerMethod.getMethod(), method -> resolve(handlerMethod));
+        }
+        long retryAfterMillis = guard.tryAcquire(request);
+        if (retryAfterMillis == 0) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, (retryAfterMillis + 999) / 1000)));
+        return false;
+    }
+
+    private Guard resolve(HandlerMethod handlerMethod) {
+        RateLimited rateLimited = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), RateLimited.class);
+        if (rateLimited == null) {
+            rateLimited = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), RateLimited.class);
+        }
+        if (rateLimited == null) {
+            return UNLIMITED;
+        }
+        if (!(rateLimited.rate() > 0) || rateLimited.window() <= 0) {
+            throw new IllegalArgumentException("Invalid @RateLimited on " + handlerMethod + ": rate and window must be positive");
+        }
+        Function<HttpServletRequest, String> keyExtractor = keyExtractor(rateLimited.key());
+        if (keyExtractor == null) {
+            RateLimiter limiter = createLimiter(rateLimited);
+            return request -> limiter.tryAcquire() ? 0 : Math.max(1, limiter.getRetryAfterMillis());
+        }
+        if (rateLimited.algorithm() == RateLimited.Algorithm.SLIDING_WINDOW && windowLimit(rateLimited) > PACKED_SLIDING_WINDOW_MAX) {
+            throw new IllegalArgumentException("Invalid @RateLimited on " + handlerMethod
+                    + ": keyed sliding window limit must not exceed " + PACKED_SLIDING_WINDOW_MAX);
+        }
+        KeyedRateLimiter limiter = new KeyedRateLimiter(createAlgorithm(rateLimited), rateLimited.maxKeys(),
+                10, TimeUnit.MINUTES);
+        return request -> {
+            String key = keyExtractor.apply(request);
+            if (key == null) {
+                key = "";
+            }
+            return limiter.tryAcquire(key) ? 0 : Math.max(1, limiter.getRetryAfterMillis(key));
+        };
+    }
+
+    /**
+     * 解析 key 表达式，整个接口共用一个限流器时返回 null
+     */
+    private static Function<HttpServletRequest, String> keyExtractor(String key) {
+        if (key.isEmpty()) {
+            return null;
+        }
+        if ("ip".equals(key)) {
+            return HttpServletRequest::getRemoteAddr;
+        }
+        if (key.startsWith("header:")) {
+            String name = key.substring("header:".length());
+            return request -> request.getHeader(name);
+        }
+        if (key.startsWith("param:")) {
+            String name = key.substring("param:".length());
+            return request -> request.getParameter(name);
+        }
+        throw new IllegalArgumentException("Unsupported rate limit key: " + key);
+    }
+
+    private static RateLimiter createLimiter(RateLimited rateLimited) {
+        switch (rateLimited.algorithm()) {
+            case TOKEN_BUCKET:
+                return TokenBucketRateLimiter.create(rateLimited.rate(), bucketCapacity(rateLimited));
+            case LEAKY_BUCKET:
+                return LeakyBucketRateLimiter.create(rateLimited.rate(), bucketCapacity(rateLimited));
+            case FIXED_WINDOW:
+                return new FixedWindowRateLimiter(windowLimit(rateLimited), rateLimited.window());
+            case SLIDING_WINDOW:
+                return rateLimited.window() >= SLIDING_WINDOW_BUCKETS
+                        ? new SlidingWindowRateLimiter(windowLimit(rateLimited), rateLimited.window(), SLIDING_WINDOW_BUCKETS)
+                        : new SlidingWindowRateLimiter(windowLimit(rateLimited), rateLimited.window());
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm: " + rateLimited.algorithm());
+        }
+    }
+
+    private static PackedRateLimitAlgorithm createAlgorithm(RateLimited rateLimited) {
+        switch (rateLimited.algorithm()) {
+            case TOKEN_BUCKET:
+                return PackedRateLimitAlgorithm.tokenBucket(rateLimited.rate(), bucketCapacity(rateLimited));
+            case LEAKY_BUCKET:
+                return PackedRateLimitAlgorithm.leakyBucket(rateLimited.rate(), bucketCapacity(rateLimited));
+            case FIXED_WINDOW:
+                return PackedRateLimitAlgorithm.fixedWindow(windowLimit(rateLimited), rateLimited.window(), TimeUnit.MILLISECONDS);
+            case SLIDING_WINDOW:
+                return PackedRateLimitAlgorithm.slidingWindow(windowLimit(rateLimited), rateLimited.window(), TimeUnit.MILLISECONDS);
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm: " + rateLimited.algorithm());
+        }
+    }
+
+    private static long bucketCapacity(RateLimited rateLimited) {
+        return rateLimited.capacity() > 0 ? rateLimited.capacity() : Math.max(1, (long) Math.ceil(rateLimited.rate()));
+    }
+
+    private static int windowLimit(RateLimited rateLimited) {
+        if (rateLimited.capacity() > 0) {
+            return (int) Math.min(Integer.MAX_VALUE, rateLimited.capacity());
+        }
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.ceil(rateLimited.rate() * rateLimited.window() / 1000.0)));
+    }
+
+    /**
+     * 一个处理方法解析后的限流逻辑
+     */
+    private interface Guard {
+        /**
+         * @return 0 表示放行，否则为建议的重试等待（毫秒）
+         */
+        long tryAcquire(HttpServletRequest request);
+    }
+}
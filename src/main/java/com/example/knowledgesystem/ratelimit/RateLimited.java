@@ -0,0 +1,55 @@
+package com.example.knowledgesystem.ratelimit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流，标注在 Controller 方法或类上（方法上的优先），由 RateLimitInterceptor 执行
+ * 被拒绝的请求返回 429 Too Many Requests，并带上 Retry-After（秒）。
+ * <pre>
+ * &#64;RateLimited(rate = 100)                                          // 整个接口每秒 100 个
+ * &#64;RateLimited(key = "ip", rate = 5, capacity = 10)                  // 每个 IP 每秒 5 个，突发 10 个
+ * &#64;RateLimited(key = "header:X-User-Id", algorithm = Algorithm.SLIDING_WINDOW, rate = 1, window = 60000)
+ * </pre>
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimited {
+
+    /**
+     * 限流维度："" 整个接口共用一个限流器；"ip" 按客户端地址（getRemoteAddr，经过代理时改用 "header:X-Forwarded-For"）；
+     * "header:名称" 按请求头；"param:名称" 按请求参数。取不到值的请求共用一个空 key。
+     */
+    String key() default "";
+
+    Algorithm algorithm() default Algorithm.TOKEN_BUCKET;
+
+    /**
+     * 每秒的许可数
+     */
+    double rate();
+
+    /**
+     * 令牌桶、漏桶的容量，或窗口算法的窗口内请求数；0 表示按 rate 推算（桶为 rate，窗口为 rate * window）
+     * 按 key 的滑动窗口最多 2^20 - 1，超出时第一次请求该接口即抛出 IllegalArgumentException
+     */
+    long capacity() default 0;
+
+    /**
+     * 窗口算法的窗口大小（毫秒）
+     */
+    long window() default 1000;
+
+    /**
+     * 按 key 限流时最多保存的 key 数，超出后淘汰最久未访问的
+     */
+    int maxKeys() default 100_000;
+
+    enum Algorithm {
+        TOKEN_BUCKET, LEAKY_BUCKET, FIXED_WINDOW, SLIDING_WINDOW
+    }
+}
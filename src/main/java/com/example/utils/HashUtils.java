@@ -0,0 +1,123 @@
+package com.example.utils;
+
+/**
+ * 功能说明
+ * 非加密哈希：
+ *  参考 MurmurHash3 / MurmurHash64A 的混合函数，直接在字符串的 UTF-8 编码上计算 64 位哈希。
+ *  UTF-8 编码在遍历字符时逐字节生成，不调用 getBytes，不产生任何临时对象。
+ *  结果与对 str.getBytes(StandardCharsets.UTF_8) 计算的哈希一致（孤立代理字符按 '?' 处理）。
+ *
+ * 双重哈希：
+ *  Kirsch-Mitzenmacher 方案，用一个 64 位哈希的高低 32 位模拟 k 个独立哈希函数，
+ *  供布隆过滤器、布谷鸟过滤器等概率数据结构使用。
+ */
+public class HashUtils {
+
+    private static final long M = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+
+    private HashUtils() {}
+
+    /**
+     * 计算字符串 UTF-8 字节序列的 64 位哈希
+     *
+     * @param str  字符串
+     * @param seed 种子
+     * @return 64 位哈希值
+     */
+    public static long hash64(CharSequence str, long seed) {
+        long h = seed;
+        long block = 0L; // 尚未混合的字节（小端序）
+        int blockLen = 0; // block 中已填充的字节数
+        long totalLen = 0L; // UTF-8 总字节数
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            int encoded; // 当前字符的 UTF-8 字节，低位在前
+            int n; // 当前字符的 UTF-8 字节数
+            if (c < 0x80) {
+                encoded = c;
+                n = 1;
+            } else if (c < 0x800) {
+                encoded = (0xC0 | (c >>> 6)) | ((0x80 | (c & 0x3F)) << 8);
+                n = 2;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, str.charAt(++i));
+                    encoded = (0xF0 | (cp >>> 18))
+                            | ((0x80 | ((cp >>> 12) & 0x3F)) << 8)
+                            | ((0x80 | ((cp >>> 6) & 0x3F)) << 16)
+                            | ((0x80 | (cp & 0x3F)) << 24);
+                    n = 4;
+                } else {
+                    // 与 String.getBytes(UTF_8) 保持一致，孤立代理字符编码为 '?'
+                    encoded = '?';
+                    n = 1;
+                }
+            } else {
+                encoded = (0xE0 | (c >>> 12))
+                        | ((0x80 | ((c >>> 6) & 0x3F)) << 8)
+                        | ((0x80 | (c & 0x3F)) << 16);
+                n = 3;
+            }
+            for (int j = 0; j < n; j++) {
+                block |= ((encoded >>> (j << 3)) & 0xFFL) << (blockLen << 3);
+                if (++blockLen == 8) {
+                    h = mix(h, block);
+                    block = 0L;
+                    blockLen = 0;
+                }
+            }
+            totalLen += n;
+        }
+        if (blockLen > 0) {
+            h ^= block;
+            h *= M;
+        }
+        h ^= totalLen;
+        return fmix64(h);
+    }
+
+    /**
+     * 计算字符串 UTF-8 字节序列的 64 位哈希（种子为 0）
+     */
+    public static long hash64(CharSequence str) {
+        return hash64(str, 0L);
+    }
+
+    /**
+     * 双重哈希：由 64 位哈希派生第 i 个哈希函数在 [0, size) 中的下标
+     *
+     * @param hash64 hash64 的结果
+     * @param i      第几个哈希函数（从 0 开始）
+     * @param size   取值范围
+     * @return 下标
+     */
+    public static long index(long hash64, int i, long size) {
+        int h1 = (int) hash64;
+        int h2 = (int) (hash64 >>> 32);
+        long combined = h1 + (long) i * h2;
+        return (combined & Long.MAX_VALUE) % size;
+    }
+
+    /**
+     * MurmurHash3 的 64 位终结混合函数，也可以单独用于整数打散
+     */
+    public static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long mix(long h, long k) {
+        k *= M;
+        k ^= k >>> R;
+        k *= M;
+        h ^= k;
+        h *= M;
+        return h;
+    }
+}
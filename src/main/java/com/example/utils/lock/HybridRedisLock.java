@@ -0,0 +1,184 @@
+package com.example.utils.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 两级分布式锁：JVM 内先排队，再由队首持有 Redis 锁
+ * 同一 JVM 内的线程先竞争本地公平锁，只有拿到本地锁且 Redis 锁尚未被本 JVM 持有时才访问 Redis；
+ * Redis 锁的持有者是整个 JVM（客户端 ID），不区分线程。
+ * 释放时如果本地还有线程在排队，且连续本地交接次数未超过 fairnessBudget，就保留 Redis 锁直接交给下一个本地线程，
+ * 不需要任何 Redis 往返；超过预算后真正释放 Redis 锁，让其他节点有机会获取，避免锁被一个 JVM 长期占用。
+ * 本地竞争激烈时，Redis 加解锁次数约为本地加锁次数的 1 / (fairnessBudget + 1)。
+ */
+public class HybridRedisLock {
+
+    private final RedisReentrantLock redisLock;
+    private final String ownerId;
+    private final int fairnessBudget;
+    private final ReentrantLock localLock = new ReentrantLock(true);
+    private boolean redisHeld;           // 本 JVM 是否持有 Redis 锁，在 localLock 下读写
+    private int handoffs;                // 本次持有 Redis 锁以来的连续本地交接次数，在 localLock 下读写
+    private volatile boolean leaseLost;  // 看门狗续期失败
+    private final LongAdder redisAcquisitions = new LongAdder();
+    private final LongAdder localHandoffs = new LongAdder();
+
+    /**
+     * @param redisLock      底层 Redis 锁，只使用其脚本、释放通知和续期，不使用其按线程区分的本地状态
+     * @param ownerId        Redis 中的持有者标识，整个 JVM 共用
+     * @param fairnessBudget 释放 Redis 锁之前最多连续交接给本地线程的次数
+     */
+    HybridRedisLock(RedisReentrantLock redisLock, String ownerId, int fairnessBudget) {
+        if (fairnessBudget < 0) {
+            throw new IllegalArgumentException("Fairness budget must not be negative");
+        }
+        this.redisLock = redisLock;
+        this.ownerId = ownerId;
+        this.fairnessBudget = fairnessBudget;
+    }
+
+    /**
+     * 尝试获取锁，不等待
+     */
+    public boolean tryLock() {
+        if (!localLock.tryLock()) {
+            return false;
+        }
+        if (acquireRedis() || redisLock.tryAcquire(ownerId) == null && redisAcquired()) {
+            return true;
+        }
+        localLock.unlock();
+        return false;
+    }
+
+    /**
+     * 获取锁，最多等待 timeout（本地排队和等待 Redis 锁合计）
+     *
+     * @return 是否在超时前获取成功
+     */
+    public boolean lock(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean locked;
+        try {
+            locked = localLock.tryLock(timeout, unit);
+        } catch (InterruptedException e) {
+            // 排在前面的线程可能把 Redis 锁交接给了被中断离开的本线程
+            releaseIfIdle();
+            throw e;
+        }
+        if (!locked) {
+            // 排在前面的线程可能把 Redis 锁交接给了已超时离开的本线程
+            releaseIfIdle();
+            return false;
+        }
+        try {
+            if (acquireRedis() || redisLock.awaitAcquire(ownerId, deadline) && redisAcquired()) {
+                return true;
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            localLock.unlock();
+            throw e;
+        }
+        localLock.unlock();
+        return false;
+    }
+
+    /**
+     * 释放锁：有本地线程排队且预算未用完时直接交接，否则释放 Redis 锁
+     *
+     * @throws IllegalMonitorStateException 当前线程未持有锁
+     */
+    public void unlock() {
+        if (!localLock.isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException("Hybrid lock " + redisLock.getName() + " is not held by current thread");
+        }
+        boolean handedOff = false;
+        if (localLock.getHoldCount() == 1) {
+            if (localLock.hasQueuedThreads() && handoffs < fairnessBudget && !leaseLost) {
+                handoffs++;
+                localHandoffs.increment();
+                handedOff = true;
+            } else {
+                releaseRedis();
+            }
+        }
+        localLock.unlock();
+        if (handedOff) {
+            // 排队的线程可能已经超时离开，没有人接手时不能一直占着 Redis 锁
+            releaseIfIdle();
+        }
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return localLock.isHeldByCurrentThread();
+    }
+
+    /**
+     * 本 JVM 中排队等待的线程数（估计值）
+     */
+    public int getQueueLength() {
+        return localLock.getQueueLength();
+    }
+
+    /**
+     * 访问 Redis 获取锁的次数
+     */
+    public long getRedisAcquisitions() {
+        return redisAcquisitions.sum();
+    }
+
+    /**
+     * 不经过 Redis 直接交接给本地线程的次数
+     */
+    public long getLocalHandoffs() {
+        return localHandoffs.sum();
+    }
+
+    /**
+     * 拿到本地锁之后：重入或接手了上一个本地线程交接的 Redis 锁时返回 true
+     */
+    private boolean acquireRedis() {
+        if (localLock.getHoldCount() > 1) {
+            return true;
+        }
+        if (redisHeld && leaseLost) {
+            // 交接期间锁已丢失，需要重新获取
+            redisHeld = false;
+            handoffs = 0;
+        }
+        return redisHeld;
+    }
+
+    private boolean redisAcquired() {
+        redisHeld = true;
+        handoffs = 0;
+        leaseLost = false;
+        redisAcquisitions.increment();
+        redisLock.watch(ownerId, () -> leaseLost = true);
+        return true;
+    }
+
+    private void releaseRedis() {
+        if (redisHeld) {
+            redisHeld = false;
+            handoffs = 0;
+            redisLock.release(ownerId);
+        }
+    }
+
+    /**
+     * 本地锁空闲且无人排队时释放仍由本 JVM 持有的 Redis 锁
+     */
+    private void releaseIfIdle() {
+        if (localLock.tryLock()) {
+            try {
+                if (localLock.getHoldCount() == 1 && !localLock.hasQueuedThreads()) {
+                    releaseRedis();
+                }
+            } finally {
+                localLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.utils.lock;
+
+import com.example.utils.redis.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 基于一个独立 Redis 实例（一个 JedisPool）的红锁节点
+ * 加锁是 SET NX PX，续期和释放是校验持有者的 Lua 脚本，每个操作一次往返。
+ */
+public class JedisRedlockNode implements RedlockNode {
+
+    private static final LuaScript RENEW_SCRIPT = new LuaScript(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "else " +
+            "return 0 " +
+            "end");
+
+    private static final LuaScript RELEASE_SCRIPT = new LuaScript(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('del', KEYS[1]) " +
+            "else " +
+            "return 0 " +
+            "end");
+
+    private final JedisPool jedisPool;
+
+    public JedisRedlockNode(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String ownerId, long leaseMillis) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return "OK".equals(jedis.set(key, ownerId, SetParams.setParams().nx().px(leaseMillis)));
+        }
+    }
+
+    @Override
+    public boolean renew(String key, String ownerId, long leaseMillis) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = RENEW_SCRIPT.eval(jedis, Collections.singletonList(key),
+                    Arrays.asList(ownerId, String.valueOf(leaseMillis)));
+            return Long.valueOf(1).equals(result);
+        }
+    }
+
+    @Override
+    public boolean release(String key, String ownerId) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = RELEASE_SCRIPT.eval(jedis, Collections.singletonList(key),
+                    Collections.singletonList(ownerId));
+            return Long.valueOf(1).equals(result);
+        }
+    }
+}
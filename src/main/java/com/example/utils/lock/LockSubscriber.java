@@ -0,0 +1,232 @@
+package com.example.utils.lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 锁释放通知的订阅者，每个 RedisLockRegistry 一个
+ * 用一条专用连接只订阅本 JVM 中有等待方的锁频道：等待开始时 subscribe(锁名称)，结束时 unsubscribe，按锁名称引用计数，
+ * 第一个等待方到来时 SUBSCRIBE，最后一个离开时 UNSUBSCRIBE，不会收到其他锁、其他 JVM 的无关消息。
+ * 连接上始终订阅一个控制频道，没有等待方时订阅线程也保持阻塞；断开后自动重连并重新订阅全部频道，
+ * 期间丢失的消息由等待方的兜底重试弥补。
+ * 异步加锁的重试和兜底检查在一个共享的调度线程上执行。
+ */
+class LockSubscriber {
+    private static final Logger log = LoggerFactory.getLogger(LockSubscriber.class);
+    private static final long RECONNECT_DELAY_MILLIS = 1000; // 订阅连接断开后的重连间隔
+    private static final long SUBSCRIBE_WAIT_MILLIS = 1000;  // 等待订阅生效的最长时间
+    private static final String CONTROL_CHANNEL = "__subscriber__"; // 控制频道后缀，不会收到消息
+
+    private final JedisPool jedisPool;
+    private final String channelPrefix;
+    private final String controlChannel;
+    private final Function<String, RedisReentrantLock> lockLookup;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Subscription> subscriptions = new HashMap<>(); // 频道 -> 订阅，在 this 上同步
+    private JedisPubSub pubSub; // 控制频道订阅生效后的当前连接，断开时为 null，在 this 上同步
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param jedisPool     连接池，订阅期间占用其中一条连接
+     * @param channelPrefix 锁频道前缀，频道名为前缀 + 锁名称
+     * @param lockLookup    按锁名称查找本 JVM 中的锁对象
+     */
+    LockSubscriber(JedisPool jedisPool, String channelPrefix, Function<String, RedisReentrantLock> lockLookup) {
+        this.jedisPool = jedisPool;
+        this.channelPrefix = channelPrefix;
+        this.controlChannel = channelPrefix + CONTROL_CHANNEL;
+        this.lockLookup = lockLookup;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "redis-lock-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    String channel(String name) {
+        return channelPrefix + name;
+    }
+
+    /**
+     * 开始等待某个锁：引用计数加一，第一个等待方发出 SUBSCRIBE，不等待订阅生效
+     */
+    void subscribe(String name) {
+        start();
+        String channel = channel(name);
+        synchronized (this) {
+            Subscription subscription = subscriptions.get(channel);
+            if (subscription == null) {
+                subscription = new Subscription();
+                subscriptions.put(channel, subscription);
+                if (pubSub != null) {
+                    send(() -> pubSub.subscribe(channel));
+                }
+            }
+            subscription.refs++;
+        }
+    }
+
+    /**
+     * 等待某个锁的频道订阅生效，超时后直接返回，由兜底重试保证正确性
+     */
+    void awaitSubscribed(String name) throws InterruptedException {
+        Subscription subscription;
+        synchronized (this) {
+            subscription = subscriptions.get(channel(name));
+        }
+        if (subscription != null) {
+            subscription.confirmed.await(SUBSCRIBE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 结束等待某个锁：引用计数减一，最后一个等待方发出 UNSUBSCRIBE
+     */
+    synchronized void unsubscribe(String name) {
+        String channel = channel(name);
+        Subscription subscription = subscriptions.get(channel);
+        if (subscription == null || --subscription.refs > 0) {
+            return;
+        }
+        subscriptions.remove(channel);
+        if (pubSub != null) {
+            send(() -> pubSub.unsubscribe(channel));
+        }
+    }
+
+    synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::subscribeLoop, "redis-lock-subscriber");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void execute(Runnable task) {
+        scheduler.execute(task);
+    }
+
+    void schedule(Runnable task, long delayMillis) {
+        scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止订阅和调度线程
+     */
+    synchronized void shutdown() {
+        running = false;
+        if (pubSub != null) {
+            send(() -> pubSub.unsubscribe());
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void subscribeLoop() {
+        while (running) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                // 阻塞直到取消全部订阅或连接断开
+                jedis.subscribe(newPubSub(), controlChannel);
+                disconnected();
+            } catch (JedisException e) {
+                disconnected();
+                if (!running) {
+                    return;
+                }
+                log.warn("Lock subscriber disconnected, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 连接断开：之后的订阅请求等重连后统一发出，已有的订阅需要重新确认
+     */
+    private synchronized void disconnected() {
+        pubSub = null;
+        for (Subscription subscription : subscriptions.values()) {
+            if (subscription.confirmed.getCount() == 0) {
+                subscription.confirmed = new CountDownLatch(1);
+            }
+        }
+    }
+
+    /**
+     * 在订阅连接上发出命令，调用方持有 this 的锁，保证同一时刻只有一个线程写连接
+     * 失败说明连接已断开，订阅线程会重连并重新订阅
+     */
+    private void send(Runnable command) {
+        try {
+            command.run();
+        } catch (JedisException e) {
+            log.warn("Lock subscriber command failed, will resubscribe after reconnect: {}", e.getMessage());
+        }
+    }
+
+    private JedisPubSub newPubSub() {
+        return new JedisPubSub() {
+            @Override
+            public void onSubscribe(String channel, int subscribedChannels) {
+                if (controlChannel.equals(channel)) {
+                    connected(this);
+                    return;
+                }
+                Subscription subscription;
+                synchronized (LockSubscriber.this) {
+                    subscription = subscriptions.get(channel);
+                }
+                if (subscription != null) {
+                    subscription.confirmed.countDown();
+                }
+            }
+
+            @Override
+            public void onMessage(String channel, String message) {
+                if (controlChannel.equals(channel)) {
+                    return;
+                }
+                RedisReentrantLock lock = lockLookup.apply(channel.substring(channelPrefix.length()));
+                if (lock != null) {
+                    lock.onReleased();
+                }
+            }
+        };
+    }
+
+    /**
+     * 控制频道订阅生效：记录当前连接，并订阅连接建立前登记的全部频道
+     */
+    private synchronized void connected(JedisPubSub current) {
+        if (!running) {
+            send(current::unsubscribe);
+            return;
+        }
+        pubSub = current;
+        if (!subscriptions.isEmpty()) {
+            send(() -> current.subscribe(subscriptions.keySet().toArray(new String[0])));
+        }
+    }
+
+    private static final class Subscription {
+        int refs;                                                   // 等待方个数，在 LockSubscriber 上同步
+        volatile CountDownLatch confirmed = new CountDownLatch(1); // 订阅生效时计数归零
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.utils.lock;
+
+import com.example.utils.redis.LuaScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 进程级的锁续期看门狗
+ * 全部持有中的锁登记在这里，由唯一的一个调度线程每 TICK_MILLIS 检查一次，
+ * 把到期需要续期（距上次续期超过租期的 1/3）的锁按连接池分组，每组用一个 pipeline 发出多 key 的续期脚本（每个脚本最多 BATCH_SIZE 个 key），
+ * 即每个 Redis 每个周期只有一次往返，而不是每把锁一个线程、一次 EVAL。
+ * 续期时发现锁已不属于自己（过期后被他人获取），或者连续续期失败直到租期耗尽，就把锁从看门狗中移除并通知持有者。
+ * 不在单个 Redis 上的锁（如 RedlockLock）可以登记自定义的续期操作，由同一个调度线程逐个调用。
+ */
+public class LockWatchdog {
+    private static final Logger log = LoggerFactory.getLogger(LockWatchdog.class);
+    private static final long TICK_MILLIS = 1000; // 检查周期（毫秒）
+    private static final int BATCH_SIZE = 500;    // 每个续期脚本最多处理的 key 数
+
+    /**
+     * KEYS 为锁 key；每个 key 对应 ARGV 中的三个参数：类型（s 字符串 / h 哈希 / z 有序集合）、持有者、租期（毫秒）
+     * 有序集合中每个持有者的 score 是其过期时间（Redis 服务器时间，毫秒），续期时更新 score，key 的过期时间只延长不缩短
+     * 返回与 KEYS 一一对应的数组，1 表示续期成功，0 表示已不是持有者
+     */
+    private static final LuaScript RENEW_SCRIPT = new LuaScript(
+            "redis.replicate_commands() " +
+            "local t = redis.call('time') " +
+            "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+            "local result = {} " +
+            "for i, key in ipairs(KEYS) do " +
+            "  local base = (i - 1) * 3 " +
+            "  local mode = ARGV[base + 1] " +
+            "  local owner = ARGV[base + 2] " +
+            "  local lease = tonumber(ARGV[base + 3]) " +
+            "  local held " +
+            "  if mode == 'h' then " +
+            "    held = redis.call('hexists', key, owner) == 1 " +
+            "  elseif mode == 'z' then " +
+            "    local score = redis.call('zscore', key, owner) " +
+            "    held = score and tonumber(score) > now " +
+            "    if held then redis.call('zadd', key, now + lease, owner) end " +
+            "  else " +
+            "    held = redis.call('get', key) == owner " +
+            "  end " +
+            "  if held then " +
+            "    if mode ~= 'z' or redis.call('pttl', key) < lease then " +
+            "      redis.call('pexpire', key, lease) " +
+            "    end " +
+            "    result[i] = 1 " +
+            "  else " +
+            "    result[i] = 0 " +
+            "  end " +
+            "end " +
+            "return result");
+
+    private static final LockWatchdog INSTANCE = new LockWatchdog();
+
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+
+    private LockWatchdog() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "redis-lock-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static LockWatchdog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 登记一把字符串类型的锁（值为持有者）
+     *
+     * @param onLost 续期失败时在看门狗线程上回调，应尽快返回
+     */
+    public Lease watch(JedisPool jedisPool, String key, String ownerId, long leaseMillis, Runnable onLost) {
+        return watch(new Lease(jedisPool, key, 's', ownerId, leaseMillis, null, onLost));
+    }
+
+    /**
+     * 登记一把自定义续期方式的锁
+     *
+     * @param name    锁名称，仅用于日志
+     * @param renewer 续期操作，返回 false 表示锁已丢失，抛出异常按续期失败处理
+     * @param onLost  续期失败时在看门狗线程上回调，应尽快返回
+     */
+    public Lease watch(String name, long leaseMillis, BooleanSupplier renewer, Runnable onLost) {
+        return watch(new Lease(null, name, 's', null, leaseMillis, renewer, onLost));
+    }
+
+    /**
+     * 登记一把哈希类型的锁（field 为持有者）
+     */
+    Lease watchHash(JedisPool jedisPool, String key, String ownerId, long leaseMillis, Runnable onLost) {
+        return watch(new Lease(jedisPool, key, 'h', ownerId, leaseMillis, null, onLost));
+    }
+
+    /**
+     * 登记有序集合中的一个持有者（score 为过期时间），用于读锁、信号量等多持有者的原语
+     */
+    public Lease watchSortedSet(JedisPool jedisPool, String key, String member, long leaseMillis, Runnable onLost) {
+        return watch(new Lease(jedisPool, key, 'z', member, leaseMillis, null, onLost));
+    }
+
+    /**
+     * 取消登记，释放锁之前调用
+     */
+    public void unwatch(Lease lease) {
+        if (lease != null) {
+            leases.remove(lease);
+        }
+    }
+
+    /**
+     * 当前登记的锁数量
+     */
+    public int size() {
+        return leases.size();
+    }
+
+    private Lease watch(Lease lease) {
+        leases.add(lease);
+        return lease;
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        Map<JedisPool, List<Lease>> due = new HashMap<>();
+        for (Lease lease : leases) {
+            if (now < lease.renewAt) {
+                continue;
+            }
+            if (lease.renewer != null) {
+                renewCustom(lease, now);
+            } else {
+                due.computeIfAbsent(lease.jedisPool, p -> new ArrayList<>()).add(lease);
+            }
+        }
+        for (Map.Entry<JedisPool, List<Lease>> entry : due.entrySet()) {
+            try {
+                renew(entry.getKey(), entry.getValue(), now);
+            } catch (JedisException e) {
+                // Redis 不可用时保留登记继续重试，直到租期耗尽
+                for (Lease lease : entry.getValue()) {
+                    if (now - lease.renewedAt >= lease.leaseMillis) {
+                        lost(lease);
+                    }
+                }
+            } catch (RuntimeException e) {
+                // 不能让异常终止调度线程
+                log.warn("Lock watchdog tick failed", e);
+            }
+        }
+    }
+
+    /**
+     * 用一个 pipeline 续期同一个 Redis 上的一批锁
+     */
+    @SuppressWarnings("unchecked")
+    private void renew(JedisPool jedisPool, List<Lease> batch, long now) {
+        List<List<String>> keysList = new ArrayList<>();
+        List<List<String>> argsList = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += BATCH_SIZE) {
+            List<Lease> chunk = batch.subList(from, Math.min(from + BATCH_SIZE, batch.size()));
+            List<String> keys = new ArrayList<>(chunk.size());
+            List<String> args = new ArrayList<>(chunk.size() * 3);
+            for (Lease lease : chunk) {
+                keys.add(lease.key);
+                args.add(String.valueOf(lease.mode));
+                args.add(lease.ownerId);
+                args.add(String.valueOf(lease.leaseMillis));
+            }
+            keysList.add(keys);
+            argsList.add(args);
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            List<Object> results;
+            try (Pipeline pipeline = jedis.pipelined()) {
+                for (int n = 0; n < keysList.size(); n++) {
+                    RENEW_SCRIPT.evalsha(pipeline, keysList.get(n), argsList.get(n));
+                }
+                results = pipeline.syncAndReturnAll();
+            }
+            for (int n = 0; n < results.size(); n++) {
+                Object result = results.get(n);
+                if (LuaScript.isNoScript(result)) {
+                    result = RENEW_SCRIPT.eval(jedis, keysList.get(n), argsList.get(n));
+                }
+                if (result instanceof JedisException) {
+                    throw (JedisException) result;
+                }
+                List<Long> renewed = (List<Long>) result;
+                for (int i = 0; i < renewed.size(); i++) {
+                    Lease lease = batch.get(n * BATCH_SIZE + i);
+                    if (renewed.get(i) == 1) {
+                        lease.renewed(now);
+                    } else {
+                        lost(lease);
+                    }
+                }
+            }
+        }
+    }
+
+    private void renewCustom(Lease lease, long now) {
+        boolean renewed;
+        try {
+            renewed = lease.renewer.getAsBoolean();
+        } catch (RuntimeException e) {
+            if (now - lease.renewedAt >= lease.leaseMillis) {
+                lost(lease);
+            }
+            return;
+        }
+        if (renewed) {
+            lease.renewed(now);
+        } else {
+            lost(lease);
+        }
+    }
+
+    private void lost(Lease lease) {
+        // 已被 unwatch 的锁（正在释放）不算丢失
+        if (leases.remove(lease)) {
+            lease.lost = true;
+            if (lease.onLost != null) {
+                try {
+                    lease.onLost.run();
+                } catch (RuntimeException e) {
+                    log.warn("Lock lost callback failed for {}", lease.key, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一把登记中的锁
+     */
+    public static final class Lease {
+        private final JedisPool jedisPool;
+        private final String key;
+        private final char mode; // s 字符串 / h 哈希 / z 有序集合
+        private final String ownerId;
+        private final long leaseMillis;
+        private final BooleanSupplier renewer;
+        private final Runnable onLost;
+        private volatile long renewedAt; // 上次续期成功的时间
+        private volatile long renewAt;   // 下次需要续期的时间
+        private volatile boolean lost;
+
+        private Lease(JedisPool jedisPool, String key, char mode, String ownerId, long leaseMillis,
+                      BooleanSupplier renewer, Runnable onLost) {
+            this.jedisPool = jedisPool;
+            this.key = key;
+            this.mode = mode;
+            this.ownerId = ownerId;
+            this.leaseMillis = leaseMillis;
+            this.renewer = renewer;
+            this.onLost = onLost;
+            renewed(System.currentTimeMillis());
+        }
+
+        private void renewed(long now) {
+            renewedAt = now;
+            renewAt = now + leaseMillis / 3;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 锁是否已丢失（续期时发现被他人持有，或租期内一直续期失败）
+         */
+        public boolean isLost() {
+            return lost;
+        }
+    }
+}
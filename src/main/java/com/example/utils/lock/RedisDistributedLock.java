@@ -5,29 +5,45 @@ package com.example.utils.lock;
  * 使用 Redis 的 SETNX 命令（set if not exists）尝试获取锁。
  * 使用 EXPIRE 命令设置锁的超时时间，避免死锁。
  * 使用 Lua 脚本保证解锁的原子性。
+ * 连接从 JedisPool 中获取（Jedis 本身不是线程安全的），脚本通过 EVALSHA 调用，只在 NOSCRIPT 时回退 EVAL。
  * create at 20250310
  */
+import com.example.utils.redis.LuaScript;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.params.SetParams;
 
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Component
 public class RedisDistributedLock {
     private static final String LOCK_KEY = "distributed_lock";
     private static final String LOCK_VALUE = "locked";
     private static final int LOCK_EXPIRE_TIME = 30000; // 锁的超时时间（毫秒）
 
+    //Lua脚本保证释放锁的原子性
+    private static final LuaScript UNLOCK_SCRIPT = new LuaScript(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('del', KEYS[1]) " +
+            "else " +
+            "return 0 " +
+            "end");
+
     @Value("${spring.redis.host}")
     private String host;
 
     @Value("${spring.redis.port}")
     private int port;
 
-    private Jedis jedis;
+    private final JedisPool jedisPool;
 
-    public RedisDistributedLock(Jedis jedis) {
-        this.jedis = jedis;
+    public RedisDistributedLock(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
     }
 
     /**
@@ -38,8 +54,10 @@ public class RedisDistributedLock {
      */
     public boolean tryLock(String requestId) {
         SetParams params = SetParams.setParams().nx().px(LOCK_EXPIRE_TIME);
-        String result = jedis.set(LOCK_KEY, requestId, params);
-        return "OK".equals(result);
+        try (Jedis jedis = jedisPool.getResource()) {
+            String result = jedis.set(LOCK_KEY, requestId, params);
+            return "OK".equals(result);
+        }
     }
 
     /**
@@ -49,19 +67,18 @@ public class RedisDistributedLock {
      * @return 是否释放成功
      */
     public boolean unlock(String requestId) {
-        //Lua脚本保证释放锁的原子性
-        String script = "if redis.call('get', KEYS[1]) == ARGV[1] then " +
-                "return redis.call('del', KEYS[1]) " +
-                "else " +
-                "return 0 " +
-                "end";
-        Object result = jedis.eval(script, 1, LOCK_KEY, requestId);
-        return Long.valueOf(1).equals(result);
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = UNLOCK_SCRIPT.eval(jedis, Collections.singletonList(LOCK_KEY),
+                    Collections.singletonList(requestId));
+            return Long.valueOf(1).equals(result);
+        }
     }
 
-    public static void main(String[] args) {
-        Jedis jedis = new Jedis("localhost", 6379);
-        RedisDistributedLock lock = new RedisDistributedLock(jedis);
+    public static void main(String[] args) throws InterruptedException {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(16);
+        JedisPool jedisPool = new JedisPool(poolConfig, "localhost", 6379);
+        RedisDistributedLock lock = new RedisDistributedLock(jedisPool);
 
         String requestId = "request_123";
         if (lock.tryLock(requestId)) {
@@ -80,5 +97,25 @@ public class RedisDistributedLock {
         } else {
             System.out.println("获取锁失败");
         }
+
+        // 多线程共享同一个实例，每个线程从连接池取连接，互不干扰
+        int threads = 8;
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            String threadRequestId = "request_" + t;
+            new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (lock.tryLock(threadRequestId)) {
+                        acquired.incrementAndGet();
+                        lock.unlock(threadRequestId);
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        System.out.println("并发获取锁成功次数: " + acquired.get());
+        jedisPool.close();
     }
 }
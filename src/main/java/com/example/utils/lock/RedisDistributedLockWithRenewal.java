@@ -1,27 +1,40 @@
 package com.example.utils.lock;
 
+import com.example.utils.redis.LuaScript;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.params.SetParams;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+
+import java.util.Collections;
 
 /**
  * 分布式锁-带续期功能
- * 单点-没考虑红锁
+ * 单点-没考虑红锁，需要容忍 Redis 故障切换时使用 RedlockLock
+ * 续期交给进程级的 LockWatchdog：加锁成功后登记，解锁前取消登记，实例可以反复使用，不再每个实例一个线程。
  */
 public class RedisDistributedLockWithRenewal {
     private static final String LOCK_KEY = "distributed_lock";
-    private static final int LOCK_EXPIRE_TIME = 30000; // 锁的超时时间（毫秒）
-    private static final int WATCHDOG_INTERVAL = 10000; // 锁续期间隔（毫秒）
+    private static final int LOCK_EXPIRE_TIME = 30000; // 锁的超时时间（毫秒），看门狗每 1/3 租期续期一次
+
+    private static final LuaScript UNLOCK_SCRIPT = new LuaScript(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('del', KEYS[1]) " +
+            "else " +
+            "return 0 " +
+            "end");
 
-    private Jedis jedis;
-    private String requestId;
-    private ScheduledExecutorService watchdog;
+    private final JedisPool jedisPool;
+    private final String lockKey;
+    private volatile String requestId;
+    private volatile LockWatchdog.Lease lease;
+
+    public RedisDistributedLockWithRenewal(JedisPool jedisPool) {
+        this(jedisPool, LOCK_KEY);
+    }
 
-    public RedisDistributedLockWithRenewal(Jedis jedis) {
-        this.jedis = jedis;
-        this.watchdog = Executors.newScheduledThreadPool(1);
+    public RedisDistributedLockWithRenewal(JedisPool jedisPool, String lockKey) {
+        this.jedisPool = jedisPool;
+        this.lockKey = lockKey;
     }
 
     /**
@@ -31,29 +44,36 @@ public class RedisDistributedLockWithRenewal {
      * @return 是否获取成功
      */
     public boolean tryLock(String requestId) {
-        this.requestId = requestId;
+        return tryLock(requestId, null);
+    }
+
+    /**
+     * 尝试获取锁
+     *
+     * @param requestId 请求标识，用于解锁时验证
+     * @param onLost    续期失败（锁已丢失）时的回调，在看门狗线程上执行
+     * @return 是否获取成功
+     */
+    public boolean tryLock(String requestId, Runnable onLost) {
         SetParams params = SetParams.setParams().nx().px(LOCK_EXPIRE_TIME);
-        String result = jedis.set(LOCK_KEY, requestId, params);
+        String result;
+        try (Jedis jedis = jedisPool.getResource()) {
+            result = jedis.set(lockKey, requestId, params);
+        }
         if ("OK".equals(result)) {
-            // 启动锁续期线程
-            startWatchdog();
+            this.requestId = requestId;
+            this.lease = LockWatchdog.getInstance().watch(jedisPool, lockKey, requestId, LOCK_EXPIRE_TIME, onLost);
             return true;
         }
         return false;
     }
 
     /**
-     * 启动锁续期线程
+     * 锁是否已因续期失败而丢失
      */
-    private void startWatchdog() {
-        watchdog.scheduleAtFixedRate(() -> {
-            String script = "if redis.call('get', KEYS[1]) == ARGV[1] then " +
-                    "return redis.call('pexpire', KEYS[1], ARGV[2]) " +
-                    "else " +
-                    "return 0 " +
-                    "end";
-            jedis.eval(script, 1, LOCK_KEY, requestId, String.valueOf(LOCK_EXPIRE_TIME));
-        }, WATCHDOG_INTERVAL, WATCHDOG_INTERVAL, TimeUnit.MILLISECONDS);
+    public boolean isLost() {
+        LockWatchdog.Lease current = lease;
+        return current != null && current.isLost();
     }
 
     /**
@@ -62,35 +82,37 @@ public class RedisDistributedLockWithRenewal {
      * @return 是否释放成功
      */
     public boolean unlock() {
-        // 停止锁续期线程
-        watchdog.shutdown();
-        String script = "if redis.call('get', KEYS[1]) == ARGV[1] then " +
-                "return redis.call('del', KEYS[1]) " +
-                "else " +
-                "return 0 " +
-                "end";
-        Object result = jedis.eval(script, 1, LOCK_KEY, requestId);
-        return Long.valueOf(1).equals(result);
+        // 先停止续期
+        LockWatchdog.getInstance().unwatch(lease);
+        lease = null;
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = UNLOCK_SCRIPT.eval(jedis, Collections.singletonList(lockKey),
+                    Collections.singletonList(requestId));
+            return Long.valueOf(1).equals(result);
+        }
     }
 
     public static void main(String[] args) throws InterruptedException {
-        Jedis jedis = new Jedis("localhost", 6379);
-        RedisDistributedLockWithRenewal lock = new RedisDistributedLockWithRenewal(jedis);
+        JedisPool jedisPool = new JedisPool("localhost", 6379);
+        RedisDistributedLockWithRenewal lock = new RedisDistributedLockWithRenewal(jedisPool);
 
         String requestId = "request_123";
-        if (lock.tryLock(requestId)) {
-            try {
-                System.out.println("获取锁成功，执行业务逻辑...");
-                Thread.sleep(40000); // 模拟长时间任务
-            } finally {
-                if (lock.unlock()) {
-                    System.out.println("释放锁成功");
-                } else {
-                    System.out.println("释放锁失败");
+        for (int round = 0; round < 2; round++) { // 同一个实例可以反复加锁
+            if (lock.tryLock(requestId, () -> System.out.println("锁已丢失"))) {
+                try {
+                    System.out.println("获取锁成功，执行业务逻辑...");
+                    Thread.sleep(40000); // 模拟长时间任务，超过锁的超时时间，依靠看门狗续期
+                } finally {
+                    if (lock.unlock()) {
+                        System.out.println("释放锁成功");
+                    } else {
+                        System.out.println("释放锁失败");
+                    }
                 }
+            } else {
+                System.out.println("获取锁失败");
             }
-        } else {
-            System.out.println("获取锁失败");
         }
+        jedisPool.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+package com.example.utils.lock;
+
+import redis.clients.jedis.JedisPool;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁注册表
+ * 按资源名称发放可重入锁，不同资源使用不同的 key（distributed_lock:{name}），可以并行加锁，
+ * 不再像 RedisDistributedLock 那样整个集群共用一个 LOCK_KEY。
+ * 同一注册表中同名的锁是同一个对象，本地重入计数因此在线程之间共享一致的视图。
+ * 注册表内的全部锁共用一个 LockSubscriber 接收释放通知。
+ */
+public class RedisLockRegistry {
+    private static final String LOCK_KEY_PREFIX = "distributed_lock:";
+    private static final String CHANNEL_PREFIX = "distributed_lock_channel:";
+    private static final int LOCK_EXPIRE_TIME = 30000; // 锁的超时时间（毫秒）
+    private static final int FAIRNESS_BUDGET = 16;     // 两级锁释放 Redis 锁前最多连续本地交接的次数
+
+    private final JedisPool jedisPool;
+    private final String clientId = UUID.randomUUID().toString(); // 区分不同 JVM 的持有者
+    private final long leaseMillis;
+    private final ConcurrentMap<String, RedisReentrantLock> locks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, HybridRedisLock> hybridLocks = new ConcurrentHashMap<>();
+    private final LockSubscriber subscriber;
+
+    public RedisLockRegistry(JedisPool jedisPool) {
+        this(jedisPool, LOCK_EXPIRE_TIME);
+    }
+
+    /**
+     * @param jedisPool   连接池
+     * @param leaseMillis 锁的超时时间（毫秒）
+     */
+    public RedisLockRegistry(JedisPool jedisPool, long leaseMillis) {
+        this.jedisPool = jedisPool;
+        this.leaseMillis = leaseMillis;
+        this.subscriber = new LockSubscriber(jedisPool, CHANNEL_PREFIX, locks::get);
+    }
+
+    /**
+     * 获取指定资源的锁
+     *
+     * @param name 资源名称
+     */
+    public RedisReentrantLock getLock(String name) {
+        return locks.computeIfAbsent(name,
+                n -> new RedisReentrantLock(jedisPool, subscriber, n, LOCK_KEY_PREFIX + n, clientId, leaseMillis));
+    }
+
+    /**
+     * 获取指定资源的两级锁，本 JVM 内的竞争在本地排队
+     *
+     * @param name 资源名称，与 getLock 使用同一个 Redis key，两种锁互斥
+     */
+    public HybridRedisLock getHybridLock(String name) {
+        return getHybridLock(name, FAIRNESS_BUDGET);
+    }
+
+    /**
+     * @param fairnessBudget 释放 Redis 锁前最多连续本地交接的次数，同名的锁以首次创建时的值为准
+     */
+    public HybridRedisLock getHybridLock(String name, int fairnessBudget) {
+        return hybridLocks.computeIfAbsent(name,
+                n -> new HybridRedisLock(getLock(n), clientId + ":hybrid", fairnessBudget));
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * 停止订阅连接和调度线程
+     */
+    public void shutdown() {
+        subscriber.shutdown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        JedisPool jedisPool = new JedisPool("localhost", 6379);
+        RedisLockRegistry registry = new RedisLockRegistry(jedisPool);
+
+        RedisReentrantLock orderLock = registry.getLock("order:1001");
+        RedisReentrantLock stockLock = registry.getLock("stock:sku-1");
+        if (orderLock.tryLock()) {
+            try {
+                System.out.println("获取订单锁成功");
+                // 不同资源的锁互不影响
+                System.out.println("获取库存锁: " + stockLock.tryLock()); // true
+                stockLock.unlock();
+                // 同一线程重入，不访问 Redis
+                System.out.println("重入订单锁: " + orderLock.tryLock() + ", holdCount=" + orderLock.getHoldCount()); // true, 2
+                orderLock.unlock();
+            } finally {
+                System.out.println("释放订单锁: " + orderLock.unlock()); // true
+            }
+        }
+
+        // 阻塞等待：另一个注册表（模拟另一个 JVM）持有锁 500ms 后释放，等待方收到通知立即获取
+        RedisLockRegistry otherRegistry = new RedisLockRegistry(jedisPool);
+        RedisReentrantLock otherOrderLock = otherRegistry.getLock("order:1001");
+        RedisReentrantLock otherStockLock = otherRegistry.getLock("stock:sku-1");
+        long[] releasedAt = new long[1];
+        Thread holder = new Thread(() -> {
+            otherOrderLock.tryLock();
+            otherStockLock.tryLock();
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            releasedAt[0] = System.nanoTime();
+            otherOrderLock.unlock();
+            otherStockLock.unlock();
+        });
+        holder.start();
+        Thread.sleep(50);
+        // 异步等待：锁释放后 future 完成
+        CompletableFuture<Void> future = stockLock.lockAsync();
+        boolean acquired = orderLock.lock(5, TimeUnit.SECONDS);
+        long acquiredAt = System.nanoTime();
+        holder.join();
+        System.out.printf("阻塞获取订单锁: %b, 释放到获取耗时 %.2f ms%n", acquired, (acquiredAt - releasedAt[0]) / 1e6);
+
+        future.get(5, TimeUnit.SECONDS);
+        System.out.println("异步获取库存锁: " + stockLock.isHeldByCurrentThread()); // true
+        stockLock.unlock();
+        orderLock.unlock();
+
+        // 两级锁：8 个线程竞争同一把锁，大部分交接在本地完成
+        HybridRedisLock hybridLock = registry.getHybridLock("report:daily");
+        int[] counter = new int[1];
+        Thread[] workers = new Thread[8];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    try {
+                        if (hybridLock.lock(10, TimeUnit.SECONDS)) {
+                            try {
+                                counter[0]++;
+                            } finally {
+                                hybridLock.unlock();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        System.out.printf("两级锁: 加锁 %d 次, Redis 获取 %d 次, 本地交接 %d 次%n",
+                counter[0], hybridLock.getRedisAcquisitions(), hybridLock.getLocalHandoffs());
+
+        registry.shutdown();
+        otherRegistry.shutdown();
+        jedisPool.close();
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.utils.lock;
+
+import com.example.utils.redis.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式读写锁：读锁共享，写锁独占，写优先
+ * Redis 中三个 key：
+ *  - {name}:readers 有序集合，member 为读锁持有者，score 为其过期时间（Redis 服务器时间），每个读者单独过期，崩溃的读者不会一直挡住写者；
+ *  - {name}:writer 字符串，值为写锁持有者，带过期时间；
+ *  - {name}:writers_waiting 有序集合，等待中的写者及其意向过期时间。存在等待的写者时新的读者不能进入，避免写者饿死。
+ * 加锁、解锁各是一个 Lua 脚本，一次往返；持有期间由 LockWatchdog 批量续期（读者为有序集合模式，写者为字符串模式），
+ * 续期失败时通过 setLeaseLostListener 设置的监听器通知持有者，ReadLock / WriteLock 的 isLost 可以随时检查。
+ * 同一线程可重入读锁和写锁，持有写锁时可以再获取读锁（降级），持有读锁时不能获取写锁（升级会死锁）。
+ * 等待时按退避间隔重试，只有 lock(timeout) 等待中的写者登记意向并在每次重试时刷新，放弃等待时撤销；
+ * 只尝试一次的 tryLock 不登记意向，频繁轮询 tryLock 的写者不会挡住读者。
+ */
+public class RedisReadWriteLock {
+    private static final String LOCK_KEY_PREFIX = "rwlock:";
+    private static final int LOCK_EXPIRE_TIME = 30000;   // 锁的超时时间（毫秒）
+    private static final int INTENT_EXPIRE_TIME = 2000;  // 写者等待意向的超时时间（毫秒），须大于最大重试间隔
+    private static final long MIN_RETRY_MILLIS = 10;     // 最小重试间隔（毫秒）
+    private static final long MAX_RETRY_MILLIS = 200;    // 最大重试间隔（毫秒）
+
+    private static final String NOW =
+            "redis.replicate_commands() " +
+            "local t = redis.call('time') " +
+            "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+            "redis.call('zremrangebyscore', KEYS[1], '-inf', now) " +
+            "redis.call('zremrangebyscore', KEYS[3], '-inf', now) ";
+
+    /**
+     * KEYS: readers, writer, writers_waiting；ARGV: 持有者, 租期（毫秒）
+     * 有其他写者持有，或有写者等待且本持有者尚未持有读锁时失败
+     */
+    private static final LuaScript READ_LOCK_SCRIPT = new LuaScript(
+            NOW +
+            "local writer = redis.call('get', KEYS[2]) " +
+            "if writer and writer ~= ARGV[1] then return 0 end " +
+            "if not writer and redis.call('zscore', KEYS[1], ARGV[1]) == false " +
+            "    and redis.call('zcard', KEYS[3]) > 0 then return 0 end " +
+            "local lease = tonumber(ARGV[2]) " +
+            "redis.call('zadd', KEYS[1], now + lease, ARGV[1]) " +
+            "if redis.call('pttl', KEYS[1]) < lease then redis.call('pexpire', KEYS[1], lease) end " +
+            "return 1");
+
+    /**
+     * KEYS: readers, writer, writers_waiting；ARGV: 持有者, 租期（毫秒）, 等待意向超时（毫秒）, 是否登记意向（1 / 0）
+     * 没有写者且没有其他读者时获取成功，否则按需登记或刷新等待意向
+     */
+    private static final LuaScript WRITE_LOCK_SCRIPT = new LuaScript(
+            NOW +
+            "local writer = redis.call('get', KEYS[2]) " +
+            "if writer == false and redis.call('zcard', KEYS[1]) == 0 then " +
+            "  redis.call('set', KEYS[2], ARGV[1], 'PX', ARGV[2]) " +
+            "  redis.call('zrem', KEYS[3], ARGV[1]) " +
+            "  return 1 " +
+            "end " +
+            "if ARGV[4] == '1' then " +
+            "  local intent = tonumber(ARGV[3]) " +
+            "  redis.call('zadd', KEYS[3], now + intent, ARGV[1]) " +
+            "  if redis.call('pttl', KEYS[3]) < intent then redis.call('pexpire', KEYS[3], intent) end " +
+            "end " +
+            "return 0");
+
+    private static final LuaScript READ_UNLOCK_SCRIPT = new LuaScript(
+            "return redis.call('zrem', KEYS[1], ARGV[1])");
+
+    private static final LuaScript WRITE_UNLOCK_SCRIPT = new LuaScript(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('del', KEYS[1]) " +
+            "else " +
+            "return 0 " +
+            "end");
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final List<String> keys;
+    private final String clientId = UUID.randomUUID().toString();
+    private final long leaseMillis;
+    private final ReadLock readLock = new ReadLock();
+    private final WriteLock writeLock = new WriteLock();
+    private volatile Runnable leaseLostListener;
+
+    public RedisReadWriteLock(JedisPool jedisPool, String name) {
+        this(jedisPool, name, LOCK_EXPIRE_TIME);
+    }
+
+    /**
+     * @param jedisPool   连接池
+     * @param name        资源名称
+     * @param leaseMillis 锁的超时时间（毫秒）
+     */
+    public RedisReadWriteLock(JedisPool jedisPool, String name, long leaseMillis) {
+        this.jedisPool = jedisPool;
+        this.name = name;
+        String prefix = LOCK_KEY_PREFIX + name;
+        this.keys = Arrays.asList(prefix + ":readers", prefix + ":writer", prefix + ":writers_waiting");
+        this.leaseMillis = leaseMillis;
+    }
+
+    public ReadLock readLock() {
+        return readLock;
+    }
+
+    public WriteLock writeLock() {
+        return writeLock;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 设置锁丢失监听器：看门狗续期时发现读锁或写锁已过期，或租期内一直无法续期时，在看门狗线程上回调
+     */
+    public void setLeaseLostListener(Runnable leaseLostListener) {
+        this.leaseLostListener = leaseLostListener;
+    }
+
+    private void onLeaseLost() {
+        Runnable listener = leaseLostListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private String ownerId() {
+        return clientId + ":" + Thread.currentThread().getId();
+    }
+
+    private Object eval(LuaScript script, List<String> scriptKeys, String... args) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return script.eval(jedis, scriptKeys, Arrays.asList(args));
+        }
+    }
+
+    /**
+     * 按退避间隔重试 attempt 直到成功或超时
+     */
+    private static boolean retry(AttemptOperation attempt, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long delay = MIN_RETRY_MILLIS;
+        while (!attempt.tryOnce()) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return false;
+            }
+            Thread.sleep(Math.min(delay, remainingMillis));
+            delay = Math.min(delay * 2, MAX_RETRY_MILLIS);
+        }
+        return true;
+    }
+
+    private interface AttemptOperation {
+        boolean tryOnce();
+    }
+
+    /**
+     * 读锁，多个持有者共享
+     */
+    public class ReadLock {
+        private final ThreadLocal<int[]> holdCount = ThreadLocal.withInitial(() -> new int[1]);
+        private final ThreadLocal<LockWatchdog.Lease> lease = new ThreadLocal<>();
+
+        public boolean tryLock() {
+            int[] count = holdCount.get();
+            if (count[0] > 0) {
+                count[0]++;
+                return true;
+            }
+            String ownerId = ownerId();
+            if (Long.valueOf(1).equals(eval(READ_LOCK_SCRIPT, keys, ownerId, String.valueOf(leaseMillis)))) {
+                count[0] = 1;
+                lease.set(LockWatchdog.getInstance().watchSortedSet(jedisPool, keys.get(0), ownerId, leaseMillis,
+                        RedisReadWriteLock.this::onLeaseLost));
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 获取读锁，最多等待 timeout
+         */
+        public boolean lock(long timeout, TimeUnit unit) throws InterruptedException {
+            return retry(this::tryLock, timeout, unit);
+        }
+
+        /**
+         * @return 是否释放成功，锁已过期时返回 false
+         * @throws IllegalMonitorStateException 当前线程未持有读锁
+         */
+        public boolean unlock() {
+            int[] count = holdCount.get();
+            if (count[0] == 0) {
+                throw new IllegalMonitorStateException("Read lock " + name + " is not held by current thread");
+            }
+            if (--count[0] > 0) {
+                return true;
+            }
+            LockWatchdog.getInstance().unwatch(lease.get());
+            lease.remove();
+            return Long.valueOf(1).equals(eval(READ_UNLOCK_SCRIPT, keys.subList(0, 1), ownerId()));
+        }
+
+        public int getHoldCount() {
+            return holdCount.get()[0];
+        }
+
+        /**
+         * 当前线程持有的读锁是否已因续期失败而丢失
+         */
+        public boolean isLost() {
+            LockWatchdog.Lease current = lease.get();
+            return current != null && current.isLost();
+        }
+    }
+
+    /**
+     * 写锁，独占
+     */
+    public class WriteLock {
+        private volatile Thread owner;
+        private int holdCount;
+        private volatile LockWatchdog.Lease lease;
+
+        /**
+         * 尝试获取一次写锁，失败时不登记写意向
+         */
+        public boolean tryLock() {
+            return tryLock(false);
+        }
+
+        private boolean tryLock(boolean waiting) {
+            Thread current = Thread.currentThread();
+            if (owner == current) {
+                holdCount++;
+                return true;
+            }
+            if (readLock.getHoldCount() > 0) {
+                throw new IllegalStateException("Cannot upgrade read lock " + name + " to write lock");
+            }
+            String ownerId = ownerId();
+            if (Long.valueOf(1).equals(eval(WRITE_LOCK_SCRIPT, keys, ownerId,
+                    String.valueOf(leaseMillis), String.valueOf(INTENT_EXPIRE_TIME), waiting ? "1" : "0"))) {
+                holdCount = 1;
+                owner = current;
+                lease = LockWatchdog.getInstance().watch(jedisPool, keys.get(1), ownerId, leaseMillis,
+                        RedisReadWriteLock.this::onLeaseLost);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 获取写锁，最多等待 timeout；等待期间登记写意向，阻止新的读者进入
+         */
+        public boolean lock(long timeout, TimeUnit unit) throws InterruptedException {
+            boolean acquired = false;
+            try {
+                acquired = retry(() -> tryLock(true), timeout, unit);
+                return acquired;
+            } finally {
+                if (!acquired) {
+                    // 放弃等待，撤销写意向
+                    try (Jedis jedis = jedisPool.getResource()) {
+                        jedis.zrem(keys.get(2), ownerId());
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return 是否释放成功，锁已过期时返回 false
+         * @throws IllegalMonitorStateException 当前线程未持有写锁
+         */
+        public boolean unlock() {
+            if (owner != Thread.currentThread()) {
+                throw new IllegalMonitorStateException("Write lock " + name + " is not held by current thread");
+            }
+            if (--holdCount > 0) {
+                return true;
+            }
+            owner = null;
+            LockWatchdog.getInstance().unwatch(lease);
+            lease = null;
+            return Long.valueOf(1).equals(eval(WRITE_UNLOCK_SCRIPT, keys.subList(1, 2), ownerId()));
+        }
+
+        public boolean isHeldByCurrentThread() {
+            return owner == Thread.currentThread();
+        }
+
+        /**
+         * 写锁是否已因续期失败而丢失
+         */
+        public boolean isLost() {
+            LockWatchdog.Lease current = lease;
+            return current != null && current.isLost();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        JedisPool jedisPool = new JedisPool("localhost", 6379);
+        RedisReadWriteLock rwLock = new RedisReadWriteLock(jedisPool, "knowledge:refresh");
+        RedisReadWriteLock otherNode = new RedisReadWriteLock(jedisPool, "knowledge:refresh"); // 模拟另一个节点
+
+        // 另一节点上的读者持有读锁直到 done
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            System.out.println("另一节点读锁: " + otherNode.readLock().tryLock()); // true
+            reading.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            otherNode.readLock().unlock();
+        });
+        reader.start();
+        reading.await();
+
+        System.out.println("读锁（共享）: " + rwLock.readLock().tryLock()); // true
+        rwLock.readLock().unlock();
+        System.out.println("写锁（有读者）: " + rwLock.writeLock().tryLock()); // false，不登记写意向
+        Thread earlyReader = new Thread(() -> {
+            System.out.println("tryLock 失败后新读者: " + otherNode.readLock().tryLock()); // true
+            otherNode.readLock().unlock();
+        });
+        earlyReader.start();
+        earlyReader.join();
+
+        // 写者在后台等待，登记写意向
+        Thread writer = new Thread(() -> {
+            try {
+                System.out.println("读者释放后写锁: " + rwLock.writeLock().lock(5, TimeUnit.SECONDS)); // true
+                System.out.println("写锁降级为读锁: " + rwLock.readLock().tryLock()); // true
+                rwLock.writeLock().unlock();
+                rwLock.readLock().unlock();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.start();
+        Thread.sleep(100);
+        Thread lateReader = new Thread(() -> System.out.println("写者等待时新读者: " + otherNode.readLock().tryLock())); // false，写优先
+        lateReader.start();
+        lateReader.join();
+
+        done.countDown();
+        writer.join();
+        reader.join();
+        jedisPool.close();
+    }
+}
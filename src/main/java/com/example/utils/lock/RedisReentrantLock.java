@@ -0,0 +1,357 @@
+package com.example.utils.lock;
+
+import com.example.utils.redis.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按名称区分的可重入分布式锁，由 RedisLockRegistry 创建
+ * Redis 中以 hash 保存锁：field 为持有者（客户端 ID + 线程 ID），value 为重入次数，加锁、解锁均由 Lua 脚本原子完成。
+ * 同一线程的嵌套加锁只在本地计数，不访问 Redis；最外层 unlock 时才真正释放。
+ * 阻塞加锁不轮询 Redis：解锁脚本向锁频道 PUBLISH，等待期间由 LockSubscriber 订阅该锁的频道，等待方挂在本地条件上，收到消息后唤醒；
+ * 另外按锁的剩余过期时间和 FALLBACK_RECHECK_MILLIS 兜底重试，防止消息丢失导致一直等待。
+ * 持有期间由 LockWatchdog 自动续期，释放时取消。
+ */
+public class RedisReentrantLock {
+
+    private static final long FALLBACK_RECHECK_MILLIS = 1000; // 等待期间兜底重试的最长间隔
+
+    /**
+     * KEYS[1] 锁 key；ARGV[1] 持有者，ARGV[2] 过期时间（毫秒）
+     * 获取成功返回 nil，失败返回锁的剩余过期时间
+     */
+    static final LuaScript LOCK_SCRIPT = new LuaScript(
+            "if redis.call('exists', KEYS[1]) == 0 or redis.call('hexists', KEYS[1], ARGV[1]) == 1 then " +
+            "redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+            "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "return nil " +
+            "end " +
+            "return redis.call('pttl', KEYS[1])");
+
+    /**
+     * KEYS[1] 锁 key，KEYS[2] 锁频道；ARGV[1] 持有者，ARGV[2] 过期时间（毫秒）
+     * 不是持有者返回 nil，仍有重入返回 0，完全释放并发布通知返回 1
+     */
+    static final LuaScript UNLOCK_SCRIPT = new LuaScript(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then " +
+            "return nil " +
+            "end " +
+            "local count = redis.call('hincrby', KEYS[1], ARGV[1], -1) " +
+            "if count > 0 then " +
+            "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "return 0 " +
+            "end " +
+            "redis.call('del', KEYS[1]) " +
+            "redis.call('publish', KEYS[2], ARGV[1]) " +
+            "return 1");
+
+    private final JedisPool jedisPool;
+    private final LockSubscriber subscriber;
+    private final String name;
+    private final String lockKey;
+    private final String channel;
+    private final String clientId;
+    private final long leaseMillis;
+    private volatile Thread owner; // 本 JVM 中持有锁的线程
+    private int holdCount;         // 本地重入次数，只由持有线程修改
+
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition released = waitLock.newCondition();
+    private volatile long releaseCount; // 收到的释放通知次数，在 waitLock 下递增
+    private final Queue<AsyncWaiter> asyncWaiters = new ConcurrentLinkedQueue<>();
+    private volatile LockWatchdog.Lease lease; // 持有期间在看门狗中的登记
+    private volatile Runnable leaseLostListener;
+
+    RedisReentrantLock(JedisPool jedisPool, LockSubscriber subscriber, String name, String lockKey,
+                       String clientId, long leaseMillis) {
+        this.jedisPool = jedisPool;
+        this.subscriber = subscriber;
+        this.name = name;
+        this.lockKey = lockKey;
+        this.channel = subscriber.channel(name);
+        this.clientId = clientId;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * 尝试获取锁，当前线程已持有时直接重入
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryLock() {
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            holdCount++;
+            return true;
+        }
+        String ownerId = ownerId();
+        if (tryAcquire(ownerId) == null) {
+            acquired(current, ownerId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 获取锁，最多等待 timeout
+     * 等待期间不访问 Redis，只在收到释放通知或兜底重试时间到达时重试一次
+     *
+     * @return 是否在超时前获取成功
+     */
+    public boolean lock(long timeout, TimeUnit unit) throws InterruptedException {
+        if (tryLock()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        String ownerId = ownerId();
+        if (awaitAcquire(ownerId, deadline)) {
+            acquired(Thread.currentThread(), ownerId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 异步获取锁，一直等到获取成功为止
+     * 锁归属于调用本方法的线程：future 完成后仍须由该线程调用 unlock；取消 future 即放弃等待。
+     */
+    public CompletableFuture<Void> lockAsync() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            holdCount++;
+            future.complete(null);
+            return future;
+        }
+        AsyncWaiter waiter = new AsyncWaiter(current, ownerId(), future);
+        subscriber.subscribe(name);
+        future.whenComplete((result, e) -> subscriber.unsubscribe(name));
+        subscriber.execute(() -> attemptAsync(waiter));
+        return future;
+    }
+
+    /**
+     * 释放锁，最外层释放时才访问 Redis
+     *
+     * @return 是否释放成功，锁已过期被他人获取时返回 false
+     * @throws IllegalMonitorStateException 当前线程未持有锁
+     */
+    public boolean unlock() {
+        if (owner != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("Lock " + name + " is not held by current thread");
+        }
+        if (--holdCount > 0) {
+            return true;
+        }
+        owner = null;
+        return release(ownerId()) != null;
+    }
+
+    /**
+     * 设置锁丢失监听器：看门狗续期时发现锁已过期被他人获取，或租期内一直无法续期时，在看门狗线程上回调
+     */
+    public void setLeaseLostListener(Runnable leaseLostListener) {
+        this.leaseLostListener = leaseLostListener;
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return owner == Thread.currentThread();
+    }
+
+    /**
+     * 当前线程的重入次数，未持有时为 0
+     */
+    public int getHoldCount() {
+        return isHeldByCurrentThread() ? holdCount : 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 收到释放通知：唤醒全部同步等待线程，并重试全部异步等待
+     */
+    void onReleased() {
+        waitLock.lock();
+        try {
+            releaseCount++;
+            released.signalAll();
+        } finally {
+            waitLock.unlock();
+        }
+        AsyncWaiter waiter;
+        while ((waiter = asyncWaiters.poll()) != null) {
+            AsyncWaiter w = waiter;
+            subscriber.execute(() -> attemptAsync(w));
+        }
+    }
+
+    /**
+     * 执行加锁脚本
+     *
+     * @return null 表示获取成功，否则为锁的剩余过期时间（毫秒）
+     */
+    Long tryAcquire(String ownerId) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return (Long) LOCK_SCRIPT.eval(jedis, Collections.singletonList(lockKey),
+                    Arrays.asList(ownerId, String.valueOf(leaseMillis)));
+        }
+    }
+
+    /**
+     * 以指定持有者身份在 Redis 上等待加锁，不修改本地持有线程，也不登记续期
+     *
+     * @param deadline System.nanoTime() 意义下的截止时间
+     * @return 是否在截止时间前获取成功
+     */
+    boolean awaitAcquire(String ownerId, long deadline) throws InterruptedException {
+        subscriber.subscribe(name);
+        try {
+            subscriber.awaitSubscribed(name);
+            while (true) {
+                long generation = releaseCount;
+                Long ttl = tryAcquire(ownerId);
+                if (ttl == null) {
+                    return true;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                awaitRelease(generation, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(recheckDelay(ttl))));
+            }
+        } finally {
+            subscriber.unsubscribe(name);
+        }
+    }
+
+    /**
+     * 以指定持有者身份登记续期，供不按线程区分持有者的上层锁（HybridRedisLock）使用
+     */
+    void watch(String ownerId, Runnable onLost) {
+        lease = LockWatchdog.getInstance().watchHash(jedisPool, lockKey, ownerId, leaseMillis, onLost);
+    }
+
+    /**
+     * 持有者标识：客户端 ID + 线程 ID
+     */
+    String ownerId() {
+        return clientId + ":" + Thread.currentThread().getId();
+    }
+
+    /**
+     * 获取成功后记录本地持有者，并登记到看门狗续期
+     */
+    private void acquired(Thread thread, String ownerId) {
+        holdCount = 1;
+        owner = thread;
+        watch(ownerId, this::onLeaseLost);
+    }
+
+    /**
+     * 取消续期并执行解锁脚本，完全释放时唤醒本 JVM 的等待方
+     */
+    Object release(String ownerId) {
+        LockWatchdog.getInstance().unwatch(lease);
+        lease = null;
+        Object result;
+        try (Jedis jedis = jedisPool.getResource()) {
+            result = UNLOCK_SCRIPT.eval(jedis, Arrays.asList(lockKey, channel),
+                    Arrays.asList(ownerId, String.valueOf(leaseMillis)));
+        }
+        if (Long.valueOf(1).equals(result)) {
+            // 本 JVM 的等待方不必等订阅消息绕一圈
+            onReleased();
+        }
+        return result;
+    }
+
+    private void onLeaseLost() {
+        Runnable listener = leaseLostListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 等待释放通知，期间若已有新的通知（generation 变化）则立即返回
+     */
+    private void awaitRelease(long generation, long nanos) throws InterruptedException {
+        waitLock.lock();
+        try {
+            while (releaseCount == generation && nanos > 0) {
+                nanos = released.awaitNanos(nanos);
+            }
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * 在调度线程上尝试一次异步加锁，失败则挂入等待队列，并安排兜底重试
+     */
+    private void attemptAsync(AsyncWaiter waiter) {
+        if (waiter.future.isDone()) {
+            return;
+        }
+        long generation = releaseCount;
+        Long ttl;
+        try {
+            ttl = tryAcquire(waiter.ownerId);
+        } catch (RuntimeException e) {
+            waiter.future.completeExceptionally(e);
+            return;
+        }
+        if (ttl == null) {
+            acquired(waiter.thread, waiter.ownerId);
+            if (!waiter.future.complete(null)) {
+                // 等待期间 future 已被取消，归还锁
+                owner = null;
+                release(waiter.ownerId);
+            }
+            return;
+        }
+        asyncWaiters.add(waiter);
+        if (releaseCount != generation) {
+            // 加入队列前已收到释放通知，立即重试
+            if (asyncWaiters.remove(waiter)) {
+                subscriber.execute(() -> attemptAsync(waiter));
+            }
+            return;
+        }
+        subscriber.schedule(() -> {
+            if (asyncWaiters.remove(waiter)) {
+                attemptAsync(waiter);
+            }
+        }, recheckDelay(ttl));
+    }
+
+    /**
+     * 兜底重试间隔：不超过锁的剩余过期时间和 FALLBACK_RECHECK_MILLIS
+     */
+    private static long recheckDelay(long ttl) {
+        return Math.min(Math.max(ttl, 0), FALLBACK_RECHECK_MILLIS);
+    }
+
+    private static class AsyncWaiter {
+        final Thread thread;
+        final String ownerId;
+        final CompletableFuture<Void> future;
+
+        AsyncWaiter(Thread thread, String ownerId, CompletableFuture<Void> future) {
+            this.thread = thread;
+            this.ownerId = ownerId;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.utils.lock;
+
+import com.example.utils.redis.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式计数信号量
+ * Redis 中一个有序集合 semaphore:{name}：每次获取是一个持有者，member 为 "持有者 ID:许可数"，score 为其过期时间（Redis 服务器时间），
+ * 持有者崩溃后到期自动归还许可，不会永久占用。
+ * 获取时先清理过期持有者，再累加剩余持有者的许可数判断是否足够，获取、释放各是一个 Lua 脚本，一次往返；
+ * 持有期间由 LockWatchdog 按有序集合模式批量续期，续期失败时回调获取时传入的 onLost，isLost 可以随时检查。
+ * 许可总数由客户端传入，使用同一信号量的各节点必须配置相同的值。
+ */
+public class RedisSemaphore {
+    private static final String KEY_PREFIX = "semaphore:";
+    private static final int LEASE_TIME = 30000;         // 许可的超时时间（毫秒）
+    private static final long MIN_RETRY_MILLIS = 10;     // 最小重试间隔（毫秒）
+    private static final long MAX_RETRY_MILLIS = 200;    // 最大重试间隔（毫秒）
+
+    /**
+     * KEYS[1] 信号量 key；ARGV: 许可总数, 申请许可数, member, 租期（毫秒）
+     * 成功返回 1，许可不足返回 0
+     */
+    private static final LuaScript ACQUIRE_SCRIPT = new LuaScript(
+            "redis.replicate_commands() " +
+            "local t = redis.call('time') " +
+            "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+            "redis.call('zremrangebyscore', KEYS[1], '-inf', now) " +
+            "local used = 0 " +
+            "for _, member in ipairs(redis.call('zrange', KEYS[1], 0, -1)) do " +
+            "  used = used + tonumber(string.match(member, ':(%d+)$')) " +
+            "end " +
+            "if used + tonumber(ARGV[2]) > tonumber(ARGV[1]) then return 0 end " +
+            "local lease = tonumber(ARGV[4]) " +
+            "redis.call('zadd', KEYS[1], now + lease, ARGV[3]) " +
+            "if redis.call('pttl', KEYS[1]) < lease then redis.call('pexpire', KEYS[1], lease) end " +
+            "return 1");
+
+    /**
+     * KEYS[1] 信号量 key；ARGV: 许可总数
+     * 返回当前可用许可数
+     */
+    private static final LuaScript AVAILABLE_SCRIPT = new LuaScript(
+            "redis.replicate_commands() " +
+            "local t = redis.call('time') " +
+            "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+            "local used = 0 " +
+            "for _, member in ipairs(redis.call('zrangebyscore', KEYS[1], '(' .. now, '+inf')) do " +
+            "  used = used + tonumber(string.match(member, ':(%d+)$')) " +
+            "end " +
+            "return tonumber(ARGV[1]) - used");
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final String key;
+    private final int permits;
+    private final long leaseMillis;
+    private final Map<String, LockWatchdog.Lease> leases = new ConcurrentHashMap<>(); // 本实例持有中的许可，丢失的保留到 release
+
+    public RedisSemaphore(JedisPool jedisPool, String name, int permits) {
+        this(jedisPool, name, permits, LEASE_TIME);
+    }
+
+    /**
+     * @param jedisPool   连接池
+     * @param name        信号量名称
+     * @param permits     许可总数
+     * @param leaseMillis 许可的超时时间（毫秒）
+     */
+    public RedisSemaphore(JedisPool jedisPool, String name, int permits, long leaseMillis) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be positive");
+        }
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.key = KEY_PREFIX + name;
+        this.permits = permits;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * 尝试获取一个许可
+     *
+     * @return 持有凭证，释放时使用；许可不足时返回 null
+     */
+    public String tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * 尝试一次获取多个许可
+     *
+     * @return 持有凭证，释放时使用；许可不足时返回 null
+     */
+    public String tryAcquire(int count) {
+        return tryAcquire(count, null);
+    }
+
+    /**
+     * 尝试一次获取多个许可
+     *
+     * @param onLost 续期失败（许可已丢失）时的回调，在看门狗线程上执行
+     * @return 持有凭证，释放时使用；许可不足时返回 null
+     */
+    public String tryAcquire(int count, Runnable onLost) {
+        if (count <= 0 || count > permits) {
+            throw new IllegalArgumentException("Permit count must be between 1 and " + permits);
+        }
+        String member = UUID.randomUUID() + ":" + count;
+        Object result;
+        try (Jedis jedis = jedisPool.getResource()) {
+            result = ACQUIRE_SCRIPT.eval(jedis, Collections.singletonList(key), Arrays.asList(
+                    String.valueOf(permits), String.valueOf(count), member, String.valueOf(leaseMillis)));
+        }
+        if (Long.valueOf(1).equals(result)) {
+            leases.put(member, LockWatchdog.getInstance().watchSortedSet(jedisPool, key, member, leaseMillis, onLost));
+            return member;
+        }
+        return null;
+    }
+
+    /**
+     * 获取多个许可，按退避间隔重试，最多等待 timeout
+     *
+     * @return 持有凭证；超时返回 null
+     */
+    public String acquire(int count, long timeout, TimeUnit unit) throws InterruptedException {
+        return acquire(count, timeout, unit, null);
+    }
+
+    /**
+     * 获取多个许可，按退避间隔重试，最多等待 timeout
+     *
+     * @param onLost 续期失败（许可已丢失）时的回调，在看门狗线程上执行
+     * @return 持有凭证；超时返回 null
+     */
+    public String acquire(int count, long timeout, TimeUnit unit, Runnable onLost) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long delay = MIN_RETRY_MILLIS;
+        while (true) {
+            String permit = tryAcquire(count, onLost);
+            if (permit != null) {
+                return permit;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return null;
+            }
+            Thread.sleep(Math.min(delay, remainingMillis));
+            delay = Math.min(delay * 2, MAX_RETRY_MILLIS);
+        }
+    }
+
+    /**
+     * 许可是否已因续期失败而丢失
+     *
+     * @param permit tryAcquire / acquire 返回的凭证
+     */
+    public boolean isLost(String permit) {
+        LockWatchdog.Lease lease = leases.get(permit);
+        return lease != null && lease.isLost();
+    }
+
+    /**
+     * 归还一次获取的全部许可，许可丢失后也需要调用
+     *
+     * @param permit tryAcquire / acquire 返回的凭证
+     * @return 是否归还成功，许可已过期时返回 false
+     */
+    public boolean release(String permit) {
+        LockWatchdog.getInstance().unwatch(leases.remove(permit));
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.zrem(key, permit) == 1;
+        }
+    }
+
+    /**
+     * 当前可用许可数
+     */
+    public int availablePermits() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = AVAILABLE_SCRIPT.eval(jedis, Collections.singletonList(key),
+                    Collections.singletonList(String.valueOf(permits)));
+            return ((Long) result).intValue();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        JedisPool jedisPool = new JedisPool("localhost", 6379);
+        // 租期 3 秒，模拟崩溃的持有者很快归还许可
+        RedisSemaphore semaphore = new RedisSemaphore(jedisPool, "knowledge:import", 3, 3000);
+
+        String first = semaphore.tryAcquire(2);
+        String second = semaphore.tryAcquire();
+        System.out.println("获取 2 + 1 个许可: " + (first != null) + ", " + (second != null)); // true, true
+        System.out.println("许可用尽: " + semaphore.tryAcquire()); // null
+        semaphore.release(second);
+        System.out.println("归还 1 个后可用: " + semaphore.availablePermits()); // 1
+
+        // 模拟持有者崩溃：停止续期但不归还，到期后自动释放
+        LockWatchdog.getInstance().unwatch(semaphore.leases.remove(first));
+        Thread.sleep(5000);
+        System.out.println("崩溃持有者过期后可用: " + semaphore.availablePermits()); // 3
+
+        List<String> held = Arrays.asList(semaphore.acquire(1, 1, TimeUnit.SECONDS), semaphore.acquire(2, 1, TimeUnit.SECONDS));
+        Thread.sleep(5000);
+        System.out.println("续期中的许可 5 秒后可用: " + semaphore.availablePermits()); // 0
+        for (String permit : held) {
+            semaphore.release(permit);
+        }
+
+        // 模拟许可被清理（如 Redis 故障转移丢失了数据），下次续期时回调 onLost
+        String revoked = semaphore.tryAcquire(1, () -> System.out.println("许可丢失回调"));
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.zrem(semaphore.key, revoked);
+        }
+        Thread.sleep(2000);
+        System.out.println("许可已丢失: " + semaphore.isLost(revoked)); // true
+        System.out.println("归还已丢失的许可: " + semaphore.release(revoked)); // false
+        jedisPool.close();
+    }
+}
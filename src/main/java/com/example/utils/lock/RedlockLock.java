@@ -0,0 +1,300 @@
+package com.example.utils.lock;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 红锁：在 N 个相互独立的 Redis 节点上加锁，多数节点（N/2 + 1）成功才算获取成功
+ * 任意少数节点宕机或主从切换丢失数据时锁仍然有效。
+ *  - 加锁、续期、释放都并行发往全部节点，等待时间取决于达到多数的那个节点，而不是各节点耗时之和；
+ *  - 锁的有效时间 = 租期 - 加锁耗时 - 时钟漂移（租期 * CLOCK_DRIFT_FACTOR + 2ms），有效时间不为正时视为失败；
+ *  - 获取失败时向全部节点发送释放，清理已成功的少数节点（包括返回晚于判定的节点）；
+ *  - 持有期间登记到 LockWatchdog，每 1/3 租期并行续期一次，续期达不到多数即视为锁丢失；
+ *  - 续期和释放最多等待 NODE_TIMEOUT_MILLIS，远小于看门狗的检查周期：续期在看门狗的唯一线程上执行，
+ *    节点挂起时不能拖住其他锁的续期；续期超时按暂时失败处理，由看门狗下个周期重试，只有多数节点明确回答锁已不属于自己才算丢失；
+ *    释放也不会让调用方长时间阻塞，超时未返回的节点由其后台调用或过期清理。
+ */
+public class RedlockLock {
+    private static final String LOCK_KEY_PREFIX = "redlock:";
+    private static final int LOCK_EXPIRE_TIME = 30000;       // 锁的超时时间（毫秒）
+    private static final double CLOCK_DRIFT_FACTOR = 0.01;   // 时钟漂移系数
+    private static final int RETRY_DELAY_MILLIS = 50;        // 获取失败后的重试间隔基数（毫秒），实际加随机抖动
+    private static final long NODE_TIMEOUT_MILLIS = 200;     // 续期、释放等待节点结果的最长时间（毫秒）
+
+    private static final int RESULT_OK = 1;
+    private static final int RESULT_REJECTED = 0;
+    private static final int RESULT_ERROR = -1;
+
+    private static final ExecutorService NODE_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "redlock-node");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final List<RedlockNode> nodes;
+    private final int quorum;
+    private final String name;
+    private final String lockKey;
+    private final long leaseMillis;
+    private final long driftMillis;
+    private final long timeoutMillis;          // 续期、释放的等待上限，不超过有效时间
+    private volatile String ownerId;           // 本次持有的持有者标识，未持有时为 null
+    private volatile long validUntil;          // System.nanoTime() 意义下的有效截止时间
+    private volatile LockWatchdog.Lease lease;
+    private volatile Runnable leaseLostListener;
+
+    public RedlockLock(List<RedlockNode> nodes, String name) {
+        this(nodes, name, LOCK_EXPIRE_TIME);
+    }
+
+    /**
+     * @param nodes       相互独立的节点，建议奇数个
+     * @param name        资源名称
+     * @param leaseMillis 锁的超时时间（毫秒）
+     */
+    public RedlockLock(List<RedlockNode> nodes, String name, long leaseMillis) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+        this.nodes = new ArrayList<>(nodes);
+        this.quorum = nodes.size() / 2 + 1;
+        this.name = name;
+        this.lockKey = LOCK_KEY_PREFIX + name;
+        this.leaseMillis = leaseMillis;
+        this.driftMillis = (long) (leaseMillis * CLOCK_DRIFT_FACTOR) + 2;
+        this.timeoutMillis = Math.max(1, Math.min(NODE_TIMEOUT_MILLIS, leaseMillis - driftMillis));
+    }
+
+    /**
+     * 尝试获取一次锁
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryLock() {
+        try {
+            return attempt();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 获取锁，失败后随机退避重试，最多等待 waitTime
+     *
+     * @return 是否在超时前获取成功
+     */
+    public boolean tryLock(long waitTime, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        while (true) {
+            if (attempt()) {
+                return true;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return false;
+            }
+            // 随机退避，避免多个客户端同时重试再次各拿到少数节点
+            long delay = RETRY_DELAY_MILLIS + ThreadLocalRandom.current().nextInt(RETRY_DELAY_MILLIS);
+            Thread.sleep(Math.min(delay, remainingMillis));
+        }
+    }
+
+    /**
+     * 释放锁，并行发往全部节点，最多等待 NODE_TIMEOUT_MILLIS
+     *
+     * @return 是否在等待时间内确认多数节点释放成功（锁已过期或节点无响应时返回 false，未返回的释放仍在后台进行）
+     */
+    public boolean unlock() {
+        String current = ownerId;
+        if (current == null) {
+            throw new IllegalMonitorStateException("Redlock " + name + " is not held");
+        }
+        LockWatchdog.getInstance().unwatch(lease);
+        lease = null;
+        ownerId = null;
+        try {
+            return callAll(node -> node.release(lockKey, current), false, timeoutMillis).succeeded >= quorum;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 锁是否仍在有效时间内
+     */
+    public boolean isHeld() {
+        return ownerId != null && validUntil - System.nanoTime() > 0;
+    }
+
+    /**
+     * 剩余有效时间（毫秒），未持有时为 0
+     */
+    public long getValidityMillis() {
+        return ownerId == null ? 0 : Math.max(0, TimeUnit.NANOSECONDS.toMillis(validUntil - System.nanoTime()));
+    }
+
+    /**
+     * 设置锁丢失监听器：续期达不到多数节点时在看门狗线程上回调
+     */
+    public void setLeaseLostListener(Runnable leaseLostListener) {
+        this.leaseLostListener = leaseLostListener;
+    }
+
+    public int getQuorum() {
+        return quorum;
+    }
+
+    private boolean attempt() throws InterruptedException {
+        if (ownerId != null) {
+            throw new IllegalStateException("Redlock " + name + " is already held");
+        }
+        String candidate = UUID.randomUUID().toString();
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> calls = new ArrayList<>(nodes.size());
+        int acquired = callAll(node -> node.tryAcquire(lockKey, candidate, leaseMillis), true,
+                leaseMillis - driftMillis, calls).succeeded;
+        long validity = leaseMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) - driftMillis;
+        if (acquired >= quorum && validity > 0) {
+            validUntil = start + TimeUnit.MILLISECONDS.toNanos(leaseMillis - driftMillis);
+            ownerId = candidate;
+            lease = LockWatchdog.getInstance().watch(lockKey, leaseMillis, () -> renew(candidate), this::onLeaseLost);
+            return true;
+        }
+        // 清理已加上的少数节点，不等待结果；在各节点的加锁调用完成之后再释放，避免释放先于迟到的加锁
+        for (int i = 0; i < nodes.size(); i++) {
+            RedlockNode node = nodes.get(i);
+            calls.get(i).thenAcceptAsync(ok -> {
+                if (ok) {
+                    node.release(lockKey, candidate);
+                }
+            }, NODE_EXECUTOR);
+        }
+        return false;
+    }
+
+    /**
+     * 看门狗续期：并行续期全部节点，达到多数且仍在有效时间内才算成功
+     * 多数节点明确回答锁已不属于自己时返回 false；因超时或节点异常达不到多数时抛出异常，由看门狗下个周期重试
+     */
+    private boolean renew(String candidate) {
+        long start = System.nanoTime();
+        Tally tally;
+        try {
+            tally = callAll(node -> node.renew(lockKey, candidate, leaseMillis), true, timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Redlock " + name + " renewal interrupted", e);
+        }
+        long validity = leaseMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) - driftMillis;
+        if (tally.succeeded >= quorum && validity > 0) {
+            validUntil = start + TimeUnit.MILLISECONDS.toNanos(leaseMillis - driftMillis);
+            return true;
+        }
+        if (nodes.size() - tally.rejected < quorum) {
+            return false;
+        }
+        throw new IllegalStateException("Redlock " + name + " renewed on " + tally.succeeded + " of " + quorum + " required nodes");
+    }
+
+    private void onLeaseLost() {
+        validUntil = System.nanoTime();
+        Runnable listener = leaseLostListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 并行对全部节点执行操作，最多等待 timeoutMillis，超时后未完成的调用继续在 NODE_EXECUTOR 上进行
+     *
+     * @param untilQuorum 为 true 时达到多数成功（或已不可能达到多数）即返回
+     */
+    private Tally callAll(NodeOperation operation, boolean untilQuorum, long timeoutMillis) throws InterruptedException {
+        return callAll(operation, untilQuorum, timeoutMillis, new ArrayList<>());
+    }
+
+    /**
+     * @param calls 输出参数，与 nodes 一一对应的调用结果，返回后未完成的调用仍在进行
+     */
+    private Tally callAll(NodeOperation operation, boolean untilQuorum, long timeoutMillis,
+                          List<CompletableFuture<Boolean>> calls) throws InterruptedException {
+        BlockingQueue<Integer> results = new LinkedBlockingQueue<>();
+        for (RedlockNode node : nodes) {
+            CompletableFuture<Boolean> call = CompletableFuture.supplyAsync(() -> operation.apply(node), NODE_EXECUTOR);
+            // 节点不可用（抛出异常）按失败计，但不算明确拒绝
+            call.whenComplete((ok, e) -> results.add(e != null ? RESULT_ERROR : ok ? RESULT_OK : RESULT_REJECTED));
+            calls.add(call);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Tally tally = new Tally();
+        for (int done = 0; done < nodes.size(); done++) {
+            if (untilQuorum && (tally.succeeded >= quorum || tally.succeeded + nodes.size() - done < quorum)) {
+                break;
+            }
+            Integer result = results.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (result == null) {
+                break;
+            }
+            if (result == RESULT_OK) {
+                tally.succeeded++;
+            } else if (result == RESULT_REJECTED) {
+                tally.rejected++;
+            }
+        }
+        return tally;
+    }
+
+    /**
+     * 一次并行调用的结果：返回 true 的节点数和明确返回 false 的节点数，超时和异常的节点不计入
+     */
+    private static final class Tally {
+        int succeeded;
+        int rejected;
+    }
+
+    private interface NodeOperation {
+        boolean apply(RedlockNode node);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        // 本地演示用同一个 Redis 的不同 db 模拟三个独立节点，生产环境应为三个独立部署的实例
+        List<JedisPool> pools = new ArrayList<>();
+        List<RedlockNode> nodes = new ArrayList<>();
+        for (int db = 0; db < 3; db++) {
+            JedisPool pool = new JedisPool(new JedisPoolConfig(), "localhost", 6379, 2000, null, db);
+            pools.add(pool);
+            nodes.add(new JedisRedlockNode(pool));
+        }
+        RedlockLock lock = new RedlockLock(nodes, "order:1001", 3000);
+        RedlockLock competitor = new RedlockLock(nodes, "order:1001", 3000);
+
+        long start = System.nanoTime();
+        if (lock.tryLock(1, TimeUnit.SECONDS)) {
+            System.out.printf("获取红锁成功，耗时 %.2f ms，有效时间 %d ms%n",
+                    (System.nanoTime() - start) / 1e6, lock.getValidityMillis());
+            try {
+                System.out.println("竞争者获取: " + competitor.tryLock()); // false
+                Thread.sleep(5000); // 超过租期，依靠看门狗续期
+                System.out.println("5 秒后仍持有: " + lock.isHeld() + ", 剩余 " + lock.getValidityMillis() + " ms"); // true
+            } finally {
+                System.out.println("释放红锁: " + lock.unlock()); // true
+            }
+        }
+        for (JedisPool pool : pools) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.utils.lock;
+
+/**
+ * 红锁中的一个独立节点
+ * 每个方法对应节点上的一次原子操作，节点不可用时抛出运行时异常，由 RedlockLock 按失败处理。
+ * 除 JedisRedlockNode 外，也可以用进程内的实现代替真实 Redis 做测试。
+ */
+public interface RedlockNode {
+
+    /**
+     * 锁不存在时以 ownerId 加锁并设置过期时间
+     *
+     * @return 是否加锁成功
+     */
+    boolean tryAcquire(String key, String ownerId, long leaseMillis);
+
+    /**
+     * 锁仍属于 ownerId 时重置过期时间
+     *
+     * @return 是否续期成功
+     */
+    boolean renew(String key, String ownerId, long leaseMillis);
+
+    /**
+     * 锁属于 ownerId 时删除
+     *
+     * @return 是否释放成功
+     */
+    boolean release(String key, String ownerId);
+}
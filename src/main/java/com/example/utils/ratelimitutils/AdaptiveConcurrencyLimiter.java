@@ -0,0 +1,337 @@
+package com.example.utils.ratelimitutils;
+
+import com.example.utils.threadpool.CustomRejectedExecutionHandler;
+import com.example.utils.threadpool.CustomThreadFactory;
+import com.example.utils.threadpool.CustomThreadPool;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * 自适应并发限流：不限制速率，而是限制同时在途的请求数，并根据观察到的延迟自动调整上限
+ * 调用方 tryAcquire 获取许可，完成后 release(延迟) 归还并上报这次请求的往返时间（RTT）。
+ * 按梯度算法调整：
+ *  - 每个采样窗口（默认 100ms 且至少 MIN_SAMPLES 个样本）算一次窗口平均 RTT，并记录各窗口中最小的作为无排队 RTT；
+ *  - 梯度 = clamp(容忍倍数 * 无排队 RTT / 窗口 RTT, 0.5, 1)：延迟没有上升时梯度为 1，上限按 sqrt(上限) 加性增长；
+ *    延迟上升（下游开始排队）时梯度小于 1，上限按比例收缩；sqrt(上限) 是允许的排队量，
+ *    延迟持续很高时上限收敛到 (1 / (1 - 梯度))^2，梯度为 0.5 时是 4；
+ *  - 每隔 max(MIN_PROBE_INTERVAL, 当前上限) 个窗口把上限减半，等一个窗口排空下游的排队，再用之后的窗口重新测量无排队 RTT，
+ *    适应下游本身变快或变慢；间隔随上限增长，保证两次减半之间上限能恢复并继续增长（sqrt 增长从一半恢复约需 3 * sqrt(上限) 个窗口），
+ *    RTT 不变时上限可以一直增长到 maxLimit；
+ *  - 窗口内有请求超时或失败（releaseDropped）时上限直接乘以 DROP_BACKOFF，不加 sqrt 项也不平滑，即 AIMD 的乘性减，
+ *    下游持续失败时上限降到 minLimit；
+ *  - 窗口内最大在途数不到上限一半时不再增长，避免空闲时上限无限膨胀；按梯度算出的新上限再与旧值平滑后取整。
+ * 热路径无锁：获取是一次 CAS，归还是 LongAdder 累加；窗口结束时由抢到 CAS 的那个线程计算新上限。
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final int MIN_SAMPLES = 10;           // 窗口内至少多少个样本才更新上限
+    private static final double TOLERANCE = 1.5;         // 窗口 RTT 超过无排队 RTT 多少倍才开始收缩
+    private static final double SMOOTHING = 0.2;         // 新上限的平滑系数
+    private static final double DROP_BACKOFF = 0.5;      // 有请求超时或失败时上限的收缩倍数
+    private static final int MIN_PROBE_INTERVAL = 20;    // 重新测量无排队 RTT 的最小窗口间隔
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+    private final LongSupplier clock; // 时钟（纳秒）
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger(); // 当前窗口内的最大在途数
+    private final AtomicLong windowStart;
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAdder rttCount = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile int limit;               // 当前上限
+    private volatile double estimatedLimit;   // 未取整的上限，只由抢到窗口的线程写
+    private volatile double noLoadRtt;        // 无排队 RTT（纳秒），0 表示需要重新测量，只由抢到窗口的线程写
+    private volatile int windowsSinceProbe;   // 距上次重新测量的窗口数，-1 表示正在排空，只由抢到窗口的线程写
+    private volatile double lastRtt;          // 最近一个窗口的平均 RTT（纳秒）
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param initialLimit 初始上限
+     * @param minLimit     上限的下界
+     * @param maxLimit     上限的上界
+     * @param window       采样窗口
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long window, TimeUnit unit) {
+        this(initialLimit, minLimit, maxLimit, window, unit, System::nanoTime);
+    }
+
+    /**
+     * @param clock 时钟（纳秒），测试时可以替换
+     */
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long window, TimeUnit unit,
+                               LongSupplier clock) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = unit.toNanos(window);
+        this.clock = clock;
+        this.windowStart = new AtomicLong(clock.getAsLong());
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    /**
+     * 尝试获取一个在途许可，在途数已达上限时返回 false
+     * 获取成功后必须调用 release 或 releaseDropped 归还
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > maxInFlight.get()) {
+                    maxInFlight.accumulateAndGet(current + 1, Math::max);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还许可并上报这次请求的延迟
+     *
+     * @param rttNanos 从获取许可到完成的时间（纳秒）
+     */
+    public void release(long rttNanos) {
+        inFlight.decrementAndGet();
+        rttSum.add(rttNanos);
+        rttCount.increment();
+        maybeUpdate();
+    }
+
+    /**
+     * 归还许可，这次请求超时或失败，不计入延迟，作为过载信号
+     */
+    public void releaseDropped() {
+        inFlight.decrementAndGet();
+        drops.increment();
+        maybeUpdate();
+    }
+
+    /**
+     * 作为执行器的闸门：在途数未达上限时把任务交给执行器，任务从提交到执行完的时间作为 RTT 上报
+     * 执行器抛出任何运行时异常（如 AbortPolicy 的 RejectedExecutionException）都视为拒绝并归还许可；
+     * 拒绝策略不抛异常、静默丢弃任务时这里无法察觉，许可无法归还，CustomThreadPool 应使用 execute(CustomThreadPool, Runnable)
+     *
+     * @param executor 执行器
+     * @return 是否已提交；在途数已达上限或执行器拒绝时返回 false
+     */
+    public boolean execute(Executor executor, Runnable task) {
+        return submit(gated -> {
+            executor.execute(gated);
+            return true;
+        }, task);
+    }
+
+    /**
+     * 作为 CustomThreadPool 的闸门，与 execute(Executor, Runnable) 相同，
+     * 另外根据 CustomThreadPool.execute 的返回值识别只记录日志、不抛异常的拒绝策略，
+     * 已进入队列后又被淘汰（DiscardOldestPolicy）或被 shutdownNow 清空的任务也归还许可
+     *
+     * @return 是否已提交；在途数已达上限或线程池拒绝时返回 false
+     */
+    public boolean execute(CustomThreadPool threadPool, Runnable task) {
+        return submit(gated -> threadPool.execute(gated, () -> abandon(gated)), task);
+    }
+
+    private boolean submit(Predicate<GatedTask> submitter, Runnable task) {
+        if (!tryAcquire()) {
+            return false;
+        }
+        GatedTask gated = new GatedTask(task, clock.getAsLong());
+        boolean accepted;
+        try {
+            accepted = submitter.test(gated);
+        } catch (RuntimeException e) {
+            accepted = false;
+        }
+        if (accepted) {
+            return true;
+        }
+        // 被拒绝但任务已经开始（如 CallerRunsPolicy 在当前线程执行了它）时由任务自己归还许可
+        return !abandon(gated) && gated.isStarted();
+    }
+
+    /**
+     * 放弃没有执行的任务并归还许可
+     *
+     * @return 是否放弃成功；任务已经开始或已被放弃时返回 false
+     */
+    private boolean abandon(GatedTask gated) {
+        if (gated.abandon()) {
+            releaseDropped();
+            return true;
+        }
+        return false;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 最近一个窗口的平均 RTT（毫秒）
+     */
+    public double getLastRttMillis() {
+        return lastRtt / 1e6;
+    }
+
+    private void maybeUpdate() {
+        long now = clock.getAsLong();
+        long start = windowStart.get();
+        if (now - start < windowNanos || rttCount.sum() + drops.sum() < MIN_SAMPLES) {
+            return;
+        }
+        if (!windowStart.compareAndSet(start, now)) {
+            return; // 其他线程正在更新
+        }
+        long sum = rttSum.sumThenReset();
+        long count = rttCount.sumThenReset();
+        long dropped = drops.sumThenReset();
+        int peak = maxInFlight.getAndSet(inFlight.get());
+        if (windowsSinceProbe < 0) {
+            // 减半后的第一个窗口仍有之前排队的请求，丢弃它的样本
+            windowsSinceProbe = 0;
+            return;
+        }
+        double estimate = estimatedLimit;
+        if (dropped > 0 || count == 0) {
+            // 乘性减；到了重新测量的时间也推迟到下一个正常窗口
+            windowsSinceProbe++;
+            estimate = Math.max(minLimit, estimate * DROP_BACKOFF);
+            estimatedLimit = estimate;
+            limit = (int) estimate;
+            return;
+        }
+        double shortRtt = (double) sum / count;
+        lastRtt = shortRtt;
+        double baseline = noLoadRtt == 0 ? shortRtt : Math.min(noLoadRtt, shortRtt);
+        noLoadRtt = baseline;
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baseline / shortRtt));
+        if (++windowsSinceProbe >= Math.max(MIN_PROBE_INTERVAL, estimate)) {
+            // 减半上限排空排队，之后窗口的 RTT 作为新的无排队 RTT
+            windowsSinceProbe = -1;
+            noLoadRtt = 0;
+            estimate = Math.max(minLimit, estimate / 2);
+            estimatedLimit = estimate;
+            limit = (int) estimate;
+            return;
+        }
+        double next = estimate * gradient + Math.sqrt(estimate);
+        if (next > estimate && peak < estimate / 2) {
+            // 流量不足以验证更高的上限
+            next = estimate;
+        }
+        estimate = estimate * (1 - SMOOTHING) + next * SMOOTHING;
+        estimate = Math.max(minLimit, Math.min(maxLimit, estimate));
+        estimatedLimit = estimate;
+        limit = (int) estimate;
+    }
+
+    /**
+     * 经过闸门的任务：开始执行和放弃二者只有一个能成功，许可只归还一次
+     */
+    private final class GatedTask implements Runnable {
+        private static final int NEW = 0;
+        private static final int STARTED = 1;
+        private static final int ABANDONED = 2;
+
+        private final Runnable task;
+        private final long submitNanos;
+        private final AtomicInteger state = new AtomicInteger(NEW);
+
+        GatedTask(Runnable task, long submitNanos) {
+            this.task = task;
+            this.submitNanos = submitNanos;
+        }
+
+        /**
+         * 执行器拒绝后放弃任务，之后即使执行器仍然调用 run 也不会执行
+         *
+         * @return 是否放弃成功；任务已经开始时返回 false
+         */
+        boolean abandon() {
+            return state.compareAndSet(NEW, ABANDONED);
+        }
+
+        boolean isStarted() {
+            return state.get() == STARTED;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(NEW, STARTED)) {
+                return;
+            }
+            boolean completed = false;
+            try {
+                task.run();
+                completed = true;
+            } finally {
+                if (completed) {
+                    release(clock.getAsLong() - submitNanos);
+                } else {
+                    releaseDropped();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        CustomThreadPool threadPool = new CustomThreadPool(64, 64, 60, TimeUnit.SECONDS, 1000,
+                new CustomThreadFactory(), new CustomRejectedExecutionHandler());
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 64);
+        // 模拟下游：并发不超过 8 时 10ms，超过后按并发数排队
+        AtomicInteger downstream = new AtomicInteger();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        int submitted = 0;
+        while (System.nanoTime() < end) {
+            boolean accepted = limiter.execute(threadPool, () -> {
+                int concurrent = downstream.incrementAndGet();
+                try {
+                    long millis = 10L * Math.max(8, concurrent) / 8 + ThreadLocalRandom.current().nextInt(3);
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    downstream.decrementAndGet();
+                }
+            });
+            if (accepted) {
+                submitted++;
+            }
+            if (submitted % 200 == 0 && accepted) {
+                System.out.printf("limit=%d, inFlight=%d, rtt=%.1f ms%n",
+                        limiter.getLimit(), limiter.getInFlight(), limiter.getLastRttMillis());
+            }
+            Thread.sleep(0, 200_000);
+        }
+        System.out.println("提交: " + submitted + ", 拒绝: " + limiter.getRejectedCount() + ", 最终上限: " + limiter.getLimit());
+        threadPool.shutdown();
+    }
+}
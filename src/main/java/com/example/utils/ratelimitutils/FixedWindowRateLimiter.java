@@ -1,32 +1,137 @@
 package com.example.utils.ratelimitutils;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
 
 /**
  * 限流-固定窗口
+ * 窗口序号和计数打包在同一个 long 中（高 32 位窗口序号，低 32 位计数），用 CAS 一起更新：
+ * 窗口切换与计数是同一次原子操作，多个线程同时跨过窗口边界时只有一个重置成功，其余在新窗口上重试，不会多放行；
+ * 窗口序号由时钟除以窗口大小得到，窗口边界对所有线程一致。拒绝路径只读不写。
+ *
+ * 分段模式：计数分散到多个独立缓存行的分段中，limit 预先平均分配给各分段，线程按 ID 固定落到一个分段，
+ * 分段用完后依次向其他分段借用。每个分段的计数都不超过它的配额，所以每个窗口的放行总数仍然严格不超过 limit；
+ * 代价是接近上限时的请求要扫描多个分段（最多 stripes 次 CAS），并且同一窗口内各分段按各自读到的时钟切换窗口，
+ * 窗口边界附近可能有一个分段已进入新窗口而另一个还在旧窗口。
  */
-public class FixedWindowRateLimiter {
+public class FixedWindowRateLimiter implements RateLimiter {
+    private static final int PADDING = 8; // 每个分段占 8 个 long（64 字节），避免伪共享
+
     private final int limit; // 窗口内允许的最大请求数
-    private final long windowSizeInMillis; // 窗口大小（毫秒）
-    private final AtomicInteger counter; // 当前窗口的请求计数
-    private long windowStart; // 当前窗口的开始时间
+    private final long windowNanos; // 窗口大小（纳秒）
+    private final LongSupplier clock; // 时钟（纳秒）
+    private final int stripes; // 分段数
+    private final int[] quotas; // 各分段的配额
+    private final AtomicLongArray cells; // 各分段的 窗口序号 | 计数
 
     public FixedWindowRateLimiter(int limit, long windowSizeInMillis) {
+        this(limit, TimeUnit.MILLISECONDS.toNanos(windowSizeInMillis), 1, System::nanoTime);
+    }
+
+    /**
+     * 分段模式
+     *
+     * @param stripes 分段数，通常取 CPU 核数
+     */
+    public FixedWindowRateLimiter(int limit, long windowSizeInMillis, int stripes) {
+        this(limit, TimeUnit.MILLISECONDS.toNanos(windowSizeInMillis), stripes, System::nanoTime);
+    }
+
+    /**
+     * @param clock 时钟（纳秒），测试时可以替换
+     */
+    FixedWindowRateLimiter(int limit, long windowNanos, int stripes, LongSupplier clock) {
+        if (limit <= 0 || windowNanos <= 0 || stripes <= 0) {
+            throw new IllegalArgumentException("Limit, window and stripes must be positive");
+        }
         this.limit = limit;
-        this.windowSizeInMillis = windowSizeInMillis;
-        this.counter = new AtomicInteger(0);
-        this.windowStart = System.currentTimeMillis();
+        this.windowNanos = windowNanos;
+        this.clock = clock;
+        this.stripes = stripes;
+        this.quotas = new int[stripes];
+        for (int i = 0; i < stripes; i++) {
+            quotas[i] = limit / stripes + (i < limit % stripes ? 1 : 0);
+        }
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        long window = window(clock.getAsLong());
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PADDING, window << 32);
+        }
     }
 
+    @Override
     public boolean tryAcquire() {
-        long currentTime = System.currentTimeMillis();
-        // 如果当前时间已经超过窗口，重置窗口
-        if (currentTime - windowStart > windowSizeInMillis) {
-            counter.set(0);
-            windowStart = currentTime;
+        long window = window(clock.getAsLong());
+        if (stripes == 1) {
+            return tryAcquire(0, window);
+        }
+        int home = (int) (Thread.currentThread().getId() % stripes);
+        for (int i = 0; i < stripes; i++) {
+            int stripe = home + i < stripes ? home + i : home + i - stripes;
+            if (tryAcquire(stripe, window)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 当前窗口已放行的请求数
+     */
+    public long currentCount() {
+        long window = window(clock.getAsLong());
+        long count = 0;
+        for (int i = 0; i < stripes; i++) {
+            long state = cells.get(i * PADDING);
+            if (state >>> 32 == window) {
+                count += state & 0xFFFFFFFFL;
+            }
         }
-        // 检查当前窗口的请求数是否超过限制
-        return counter.incrementAndGet() <= limit;
+        return count;
+    }
+
+    /**
+     * 当前窗口已满时返回到下一个窗口的时间
+     */
+    @Override
+    public long getRetryAfterMillis() {
+        if (currentCount() < limit) {
+            return 0;
+        }
+        long remaining = windowNanos - Math.floorMod(clock.getAsLong(), windowNanos);
+        return TimeUnit.NANOSECONDS.toMillis(remaining) + 1;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private boolean tryAcquire(int stripe, long window) {
+        int index = stripe * PADDING;
+        int quota = quotas[stripe];
+        while (true) {
+            long state = cells.get(index);
+            long stateWindow = state >>> 32;
+            long count;
+            if (stateWindow == window) {
+                count = state & 0xFFFFFFFFL;
+            } else if (((window - stateWindow) & 0xFFFFFFFFL) < 0x80000000L) {
+                count = 0; // 进入新窗口
+            } else {
+                return false; // 时钟读得较早，窗口已被其他线程推进
+            }
+            if (count >= quota) {
+                return false;
+            }
+            if (cells.compareAndSet(index, state, window << 32 | (count + 1))) {
+                return true;
+            }
+        }
+    }
+
+    private long window(long nanos) {
+        return Math.floorDiv(nanos, windowNanos) & 0xFFFFFFFFL;
     }
 
     public static void main(String[] args) throws InterruptedException {
@@ -35,5 +140,16 @@ public class FixedWindowRateLimiter {
             System.out.println("Request " + i + ": " + (limiter.tryAcquire() ? "Allowed" : "Denied"));
             Thread.sleep(100); // 模拟请求间隔
         }
+
+        // 分段模式：按 CPU 核数分段
+        FixedWindowRateLimiter striped = new FixedWindowRateLimiter(1000, 1000,
+                Runtime.getRuntime().availableProcessors());
+        int allowed = 0;
+        for (int i = 0; i < 2000; i++) {
+            if (striped.tryAcquire()) {
+                allowed++;
+            }
+        }
+        System.out.println("分段模式放行: " + allowed + ", 当前计数: " + striped.currentCount()); // 1000
     }
 }
@@ -0,0 +1,176 @@
+package com.example.utils.ratelimitutils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 以 GCRA（通用信元速率算法）实现的限流器基类，令牌桶和漏桶（作为计量器）都是它的特例
+ * 状态只有一个 long —— 理论到达时间 TAT，存在一个 AtomicLong 中，用 CAS 更新，无锁。
+ * 获取 n 个许可：next = max(tat, now - burst) + n * interval，next 不晚于 now 即可立即放行。
+ *
+ * 等待获取基于预约：next 晚于 now 时也可以直接把 tat 推进到 next，相当于预约了 next 这个时刻的许可，
+ * 调用方等到 next 即可，不需要轮询重试。预约按 CAS 成功的顺序依次推进 tat，
+ * 先预约的等待时刻一定更早，所以等待者严格按 FIFO 顺序获得许可，后来的请求不会插队。
+ *  - acquire / tryAcquire(permits, timeout)：预约后当前线程 park 到预约时刻；超时版本在预约前判断，等不到的不预约；
+ *  - acquireAsync：预约后由所有限流器共享的一个定时线程在预约时刻完成 CompletableFuture，不占用调用线程。
+ * 预约后线程被中断时，预约的许可不会归还。
+ */
+public abstract class GcraRateLimiter implements RateLimiter {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final long capacity;        // 容量
+    private final double interval;      // 每个许可的间隔（纳秒）
+    private final long burstNanos;      // 容量对应的时间跨度（纳秒）
+    private final long baseNanos = System.nanoTime(); // 时间基准，状态中保存相对它的偏移
+    private final AtomicLong tat;       // 理论到达时间（相对 baseNanos 的纳秒）
+
+    protected GcraRateLimiter(long capacity, double permitsPerSecond) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (!(permitsPerSecond > 0) || permitsPerSecond > NANOS_PER_SECOND) {
+            throw new IllegalArgumentException("Rate must be in (0, 1e9] permits per second: " + permitsPerSecond);
+        }
+        this.capacity = capacity;
+        this.interval = NANOS_PER_SECOND / permitsPerSecond;
+        this.burstNanos = (long) (capacity * interval);
+        // 初始时可以立即放行 capacity 个
+        this.tat = new AtomicLong(-burstNanos);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * 一次获取多个许可，要么全部获取，要么一个也不获取，不等待
+     *
+     * @param permits 许可数，不能超过容量
+     */
+    public boolean tryAcquire(int permits) {
+        return reserve(permits, 0) >= 0;
+    }
+
+    /**
+     * 获取多个许可，最多等待 timeout；预计等待时间超过 timeout 时立即返回 false，不占用许可
+     */
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) throws InterruptedException {
+        long wait = reserve(permits, Math.max(0, unit.toNanos(timeout)));
+        if (wait < 0) {
+            return false;
+        }
+        sleepUntil(System.nanoTime() + wait);
+        return true;
+    }
+
+    /**
+     * 获取多个许可，必要时阻塞到预约的时刻
+     *
+     * @return 等待的时间（纳秒）
+     */
+    public long acquire(int permits) throws InterruptedException {
+        long wait = reserve(permits, Long.MAX_VALUE);
+        sleepUntil(System.nanoTime() + wait);
+        return wait;
+    }
+
+    /**
+     * 异步获取多个许可，返回的 future 在预约的时刻由共享定时线程完成
+     */
+    public CompletableFuture<Void> acquireAsync(int permits) {
+        long wait = reserve(permits, Long.MAX_VALUE);
+        if (wait == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Timer.SCHEDULER.schedule(() -> future.complete(null), wait, TimeUnit.NANOSECONDS);
+        return future;
+    }
+
+    /**
+     * 当前可以立即获取的许可数（估计值）
+     */
+    public long availablePermits() {
+        long now = System.nanoTime() - baseNanos;
+        long available = (long) ((now - Math.max(tat.get(), now - burstNanos)) / interval);
+        return Math.max(0, Math.min(capacity, available));
+    }
+
+    @Override
+    public long getRetryAfterMillis() {
+        long now = System.nanoTime() - baseNanos;
+        long wait = Math.max(tat.get(), now - burstNanos) + (long) interval - now;
+        return wait > 0 ? TimeUnit.NANOSECONDS.toMillis(wait) + 1 : 0;
+    }
+
+    /**
+     * 已预约但还没到时刻的许可数
+     */
+    public long pendingPermits() {
+        long ahead = tat.get() - (System.nanoTime() - baseNanos);
+        return ahead > 0 ? (long) Math.ceil(ahead / interval) : 0;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 每秒的许可数
+     */
+    public double getRate() {
+        return NANOS_PER_SECOND / interval;
+    }
+
+    /**
+     * 预约 permits 个许可
+     *
+     * @param maxWaitNanos 最多愿意等待的时间，0 表示只接受立即放行
+     * @return 需要等待的时间（纳秒），0 表示立即可用；等待时间超过 maxWaitNanos 时返回 -1，不修改状态
+     */
+    private long reserve(int permits, long maxWaitNanos) {
+        if (permits <= 0 || permits > capacity) {
+            throw new IllegalArgumentException("Permits must be between 1 and " + capacity);
+        }
+        long cost = (long) (permits * interval);
+        long now = System.nanoTime() - baseNanos;
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now - burstNanos) + cost;
+            long wait = next - now;
+            if (wait > maxWaitNanos) {
+                // 许可不足，不修改状态
+                return -1;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * 所有限流器共享的定时线程，延迟到第一次异步获取时创建
+     */
+    private static final class Timer {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limiter-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.utils.ratelimitutils;
+
+import com.example.utils.HashUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 按 key 限流（每个租户、用户、IP 一个桶），支持百万级 key
+ * 每个 key 不对应任何对象：key 的 64 位哈希、算法状态（PackedRateLimitAlgorithm 打包成一个 long）、最近访问时间
+ * 分别存放在三个 AtomicLongArray 中，组成开放寻址（线性探测）哈希表，每个 key 约 48 字节。
+ *  - 表分为 SEGMENTS 段，查找已有 key 和更新状态都无锁（CAS）；新建 key 和淘汰时才锁住所在的段；
+ *  - 空闲超过 idleTimeout 的 key 在新建 key 时顺带清理（每段每半个 idleTimeout 最多扫描一次），也可以调用 evictIdle 主动清理；
+ *  - 段内 key 数达到上限时，随机采样 SAMPLE_SIZE 个 key 淘汰最久未访问的一个（近似 LRU），内存始终有界；
+ *  - 删除留下墓碑，墓碑过多时重建该段的表；重建期间并发的更新可能被重复计入（只会偏向拒绝，不会多放行）。
+ * 只保存 key 的哈希，两个 key 哈希相同（概率约 n / 2^64）时会共用一个桶。
+ */
+public class KeyedRateLimiter {
+    private static final long EMPTY = 0;      // 空槽
+    private static final long TOMBSTONE = 1;  // 已删除
+    private static final int SEGMENTS = 64;   // 段数
+    private static final int SAMPLE_SIZE = 8; // 按容量淘汰时的采样数
+
+    private final PackedRateLimitAlgorithm algorithm;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long idleNanos;
+    private final LongSupplier clock;  // 时钟（纳秒）
+    private final long baseNanos;      // 时间基准，状态中的时间都是相对它的纳秒
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param algorithm   每个 key 使用的限流算法
+     * @param maxKeys     最多保存的 key 数
+     * @param idleTimeout 空闲多久的 key 可以被淘汰
+     */
+    public KeyedRateLimiter(PackedRateLimitAlgorithm algorithm, int maxKeys, long idleTimeout, TimeUnit unit) {
+        this(algorithm, maxKeys, idleTimeout, unit, System::nanoTime);
+    }
+
+    /**
+     * @param clock 时钟（纳秒），测试时可以替换
+     */
+    KeyedRateLimiter(PackedRateLimitAlgorithm algorithm, int maxKeys, long idleTimeout, TimeUnit unit,
+                     LongSupplier clock) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("Max keys must be positive");
+        }
+        this.algorithm = algorithm;
+        this.idleNanos = unit.toNanos(idleTimeout);
+        this.clock = clock;
+        this.baseNanos = clock.getAsLong();
+        int maxLive = Math.max(1, (maxKeys + SEGMENTS - 1) / SEGMENTS);
+        // 装载率不超过 50%
+        int capacity = Integer.highestOneBit(maxLive * 2 - 1) << 1;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxLive, Math.max(capacity, 2));
+        }
+    }
+
+    public boolean tryAcquire(String key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * 对 key 申请 permits 个许可
+     */
+    public boolean tryAcquire(String key, int permits) {
+        long hash = keyHash(key);
+        long now = clock.getAsLong() - baseNanos;
+        Segment segment = segments[(int) (hash >>> 58)];
+        boolean counted = false;
+        while (true) {
+            Table table = segment.table;
+            int slot = table.find(hash);
+            if (slot < 0) {
+                if (!counted) {
+                    misses.increment();
+                    counted = true;
+                }
+                segment.insert(hash, now);
+                continue;
+            }
+            if (!counted) {
+                hits.increment();
+                counted = true;
+            }
+            Boolean result = acquireAt(table, slot, hash, now, permits);
+            if (result != null) {
+                return result;
+            }
+            // 槽位已被淘汰或表已重建，重新查找
+        }
+    }
+
+    /**
+     * key 预计还要多久才能获取到一个许可（毫秒），0 表示现在就可以；key 不存在时返回 0
+     */
+    public long getRetryAfterMillis(String key) {
+        long hash = keyHash(key);
+        Table table = segments[(int) (hash >>> 58)].table;
+        int slot = table.find(hash);
+        if (slot < 0) {
+            return 0;
+        }
+        long wait = algorithm.nanosUntilAvailable(table.states.get(slot), clock.getAsLong() - baseNanos);
+        return wait > 0 ? TimeUnit.NANOSECONDS.toMillis(wait) + 1 : 0;
+    }
+
+    /**
+     * 主动清理全部空闲超时的 key
+     *
+     * @return 清理的 key 数
+     */
+    public int evictIdle() {
+        long now = clock.getAsLong() - baseNanos;
+        int evicted = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                evicted += segment.sweepIdle(now);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * 当前保存的 key 数
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.table.live;
+        }
+        return size;
+    }
+
+    /**
+     * 命中已有 key 的次数
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * 新建 key 的次数
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 淘汰的 key 数（空闲超时和超出容量）
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * 在槽位上无锁地执行一次算法
+     *
+     * @return 是否放行；槽位已不属于该 key 或表已重建时返回 null
+     */
+    private Boolean acquireAt(Table table, int slot, long hash, long now, int permits) {
+        while (true) {
+            long state = table.states.get(slot);
+            if (table.keys.get(slot) != hash) {
+                return null;
+            }
+            long next = algorithm.tryAcquire(state, now, permits);
+            if (next == PackedRateLimitAlgorithm.REJECTED) {
+                table.lastAccess.lazySet(slot, now);
+                return false;
+            }
+            if (table.states.compareAndSet(slot, state, next)) {
+                table.lastAccess.lazySet(slot, now);
+                // 重建期间的更新可能没有复制到新表，在新表上重做一次
+                return table.retired ? null : Boolean.TRUE;
+            }
+        }
+    }
+
+    /**
+     * key 的 64 位哈希，避开 EMPTY 和 TOMBSTONE 两个保留值
+     */
+    private static long keyHash(String key) {
+        long hash = HashUtils.hash64(key);
+        return hash == EMPTY || hash == TOMBSTONE ? hash + 2 : hash;
+    }
+
+    private static boolean isLive(long key) {
+        return key != EMPTY && key != TOMBSTONE;
+    }
+
+    /**
+     * 一段开放寻址表
+     */
+    private static final class Table {
+        final AtomicLongArray keys;
+        final AtomicLongArray states;
+        final AtomicLongArray lastAccess;
+        final int mask;
+        int live;                 // 有效 key 数，在段锁下修改
+        int tombstones;           // 墓碑数，在段锁下修改
+        volatile boolean retired; // 已被重建替换
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            states = new AtomicLongArray(capacity);
+            lastAccess = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+
+        /**
+         * 无锁查找，返回槽位，不存在时返回 -1
+         */
+        int find(long hash) {
+            int index = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long k = keys.get(index);
+                if (k == hash) {
+                    return index;
+                }
+                if (k == EMPTY) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    private final class Segment {
+        final ReentrantLock lock = new ReentrantLock(); // 新建、淘汰、重建时持有
+        final int maxLive;
+        volatile Table table;
+        long lastSweep; // 上次清理空闲 key 的时间，在段锁下读写
+
+        Segment(int maxLive, int capacity) {
+            this.maxLive = maxLive;
+            this.table = new Table(capacity);
+        }
+
+        void insert(long hash, long now) {
+            lock.lock();
+            try {
+                if (now - lastSweep > idleNanos / 2) {
+                    sweepIdle(now);
+                    lastSweep = now;
+                }
+                Table t = table;
+                if (t.find(hash) >= 0) {
+                    return; // 其他线程已经创建
+                }
+                if (t.live >= maxLive) {
+                    evictSample(t);
+                }
+                if ((t.live + t.tombstones + 1) * 4 > (t.mask + 1) * 3) {
+                    t = rebuild(t);
+                }
+                int index = (int) hash & t.mask;
+                while (isLive(t.keys.get(index))) {
+                    index = (index + 1) & t.mask;
+                }
+                if (t.keys.get(index) == TOMBSTONE) {
+                    t.tombstones--;
+                }
+                // 先写状态再发布 key，无锁读者看到 key 时状态已初始化
+                t.states.set(index, algorithm.initialState(now));
+                t.lastAccess.set(index, now);
+                t.keys.set(index, hash);
+                t.live++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int sweepIdle(long now) {
+            Table t = table;
+            int evicted = 0;
+            for (int i = 0; i <= t.mask; i++) {
+                if (isLive(t.keys.get(i)) && now - t.lastAccess.get(i) > idleNanos) {
+                    remove(t, i);
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        /**
+         * 从随机位置开始采样 SAMPLE_SIZE 个 key，淘汰最久未访问的一个
+         */
+        private void evictSample(Table t) {
+            int index = ThreadLocalRandom.current().nextInt(t.mask + 1);
+            int oldest = -1;
+            for (int sampled = 0, probes = 0; sampled < SAMPLE_SIZE && probes <= t.mask; probes++) {
+                if (isLive(t.keys.get(index))) {
+                    if (oldest < 0 || t.lastAccess.get(index) < t.lastAccess.get(oldest)) {
+                        oldest = index;
+                    }
+                    sampled++;
+                }
+                index = (index + 1) & t.mask;
+            }
+            if (oldest >= 0) {
+                remove(t, oldest);
+            }
+        }
+
+        private void remove(Table t, int index) {
+            t.keys.set(index, TOMBSTONE);
+            t.live--;
+            t.tombstones++;
+            evictions.increment();
+        }
+
+        /**
+         * 用同样大小的新表替换旧表，清除墓碑
+         */
+        private Table rebuild(Table old) {
+            old.retired = true;
+            Table fresh = new Table(old.mask + 1);
+            for (int i = 0; i <= old.mask; i++) {
+                long hash = old.keys.get(i);
+                if (isLive(hash)) {
+                    int index = (int) hash & fresh.mask;
+                    while (fresh.keys.get(index) != EMPTY) {
+                        index = (index + 1) & fresh.mask;
+                    }
+                    fresh.states.set(index, old.states.get(i));
+                    fresh.lastAccess.set(index, old.lastAccess.get(i));
+                    fresh.keys.set(index, hash);
+                    fresh.live++;
+                }
+            }
+            table = fresh;
+            return fresh;
+        }
+    }
+
+    public static void main(String[] args) {
+        // 每个用户每秒 5 个请求，突发 10 个；最多保存 100 万个用户，空闲 10 分钟淘汰
+        KeyedRateLimiter limiter = new KeyedRateLimiter(
+                PackedRateLimitAlgorithm.tokenBucket(5, 10), 1_000_000, 10, TimeUnit.MINUTES);
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (limiter.tryAcquire("user:42")) {
+                allowed++;
+            }
+        }
+        System.out.println("user:42 连续 20 次放行: " + allowed); // 10
+        System.out.println("user:43 不受影响: " + limiter.tryAcquire("user:43")); // true
+
+        // 容量有界：300 万个不同 IP 只保留约 100 万个
+        long start = System.nanoTime();
+        for (int i = 0; i < 3_000_000; i++) {
+            limiter.tryAcquire("ip:" + i);
+        }
+        System.out.printf("300 万个 key 耗时 %d ms, size=%d, hits=%d, misses=%d, evictions=%d%n",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), limiter.size(),
+                limiter.getHitCount(), limiter.getMissCount(), limiter.getEvictionCount());
+
+        // 滑动窗口：每个 key 每秒 3 次
+        KeyedRateLimiter sliding = new KeyedRateLimiter(
+                PackedRateLimitAlgorithm.slidingWindow(3, 1, TimeUnit.SECONDS), 1000, 1, TimeUnit.MINUTES);
+        StringBuilder results = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            results.append(sliding.tryAcquire("tenant:a") ? "Y" : "N");
+        }
+        System.out.println("滑动窗口 tenant:a: " + results); // YYYNN
+    }
+}
@@ -1,44 +1,75 @@
 package com.example.utils.ratelimitutils;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 限流-漏桶算法
+ * 以虚拟时间（GCRA）实现：水位不单独保存，而是由理论到达时间推出 —— 水位 = (tat + 容量跨度 - now) / 流出间隔，
+ * 每个请求把 tat 推进一个流出间隔，水位不超过容量即放行；状态只有一个 AtomicLong，用 CAS 更新，无锁。
+ * 作为计量器时与同容量、同速率的令牌桶等价；等待获取（acquire、tryAcquire(permits, timeout)、acquireAsync）
+ * 按预约的先后顺序依次放行，见 GcraRateLimiter；需要把突发平滑成恒定速率交给下游时使用整形模式 shaper，见 LeakyBucketShaper。
  */
-public class LeakyBucketRateLimiter {
-    private final long capacity; // 漏桶容量
-    private final long rate; // 漏桶流出速率（请求/毫秒）
-    private final AtomicLong waterLevel; // 当前水位
-    private long lastLeakTime; // 上次漏水时间
+public class LeakyBucketRateLimiter extends GcraRateLimiter {
 
+    /**
+     * @param capacity 漏桶容量
+     * @param rate     漏桶流出速率（请求/毫秒）
+     */
     public LeakyBucketRateLimiter(long capacity, long rate) {
-        this.capacity = capacity;
-        this.rate = rate;
-        this.waterLevel = new AtomicLong(0);
-        this.lastLeakTime = System.currentTimeMillis();
+        this(capacity, rate * 1000.0);
     }
 
-    public synchronized boolean tryAcquire() {
-        long currentTime = System.currentTimeMillis();
-        // 计算漏水量
-        long leaked = (currentTime - lastLeakTime) * rate;
-        if (leaked > 0) {
-            waterLevel.set(Math.max(0, waterLevel.get() - leaked));
-            lastLeakTime = currentTime;
-        }
-        // 检查当前水位是否超过容量
-        if (waterLevel.get() < capacity) {
-            waterLevel.incrementAndGet();
-            return true;
-        }
-        return false;
+    private LeakyBucketRateLimiter(long capacity, double leaksPerSecond) {
+        // 初始时桶是空的
+        super(capacity, leaksPerSecond);
+    }
+
+    /**
+     * 按每秒流出速率创建，支持小数速率
+     *
+     * @param leaksPerSecond 每秒流出的请求数
+     * @param capacity       漏桶容量
+     */
+    public static LeakyBucketRateLimiter create(double leaksPerSecond, long capacity) {
+        return new LeakyBucketRateLimiter(capacity, leaksPerSecond);
+    }
+
+    /**
+     * 整形模式：按本漏桶的流出速率把提交的任务逐个交给执行器
+     *
+     * @param queueCapacity 队列容量
+     * @param executor      下游执行器，如 CustomThreadPool::execute
+     */
+    public LeakyBucketShaper shaper(int queueCapacity, Executor executor) {
+        return new LeakyBucketShaper(getRate(), queueCapacity, executor);
+    }
+
+    /**
+     * 当前水位（估计值）
+     */
+    public long getWaterLevel() {
+        return getCapacity() - availablePermits();
     }
 
-    public static void main(String[] args) throws InterruptedException {
-        LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(10, 1); // 容量 10，每秒流出 1 个请求
+    public static void main(String[] args) throws Exception {
+        LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(10, 1); // 容量 10，每毫秒流出 1 个请求
         for (int i = 0; i < 20; i++) {
             System.out.println("Request " + i + ": " + (limiter.tryAcquire() ? "Allowed" : "Denied"));
             Thread.sleep(100); // 模拟请求间隔
         }
+
+        // 每秒流出 20 个，容量 5：前 5 个立即放行，之后每 50ms 一个，按提交顺序完成
+        LeakyBucketRateLimiter smooth = LeakyBucketRateLimiter.create(20, 5);
+        long start = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[10];
+        for (int i = 0; i < futures.length; i++) {
+            int id = i;
+            futures[i] = smooth.acquireAsync(1).thenRun(() -> System.out.printf("请求 %d 在 %d ms 放行%n",
+                    id, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+        System.out.println("水位: " + smooth.getWaterLevel() + ", 已预约: " + smooth.pendingPermits()); // 5, 约 5
+        CompletableFuture.allOf(futures).get();
     }
 }
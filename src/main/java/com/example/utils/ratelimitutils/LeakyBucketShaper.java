@@ -0,0 +1,226 @@
+package com.example.utils.ratelimitutils;
+
+import com.example.utils.threadpool.CustomThreadFactory;
+import com.example.utils.threadpool.CustomRejectedExecutionHandler;
+import com.example.utils.threadpool.CustomThreadPool;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 漏桶整形：真正的队列式漏桶
+ * LeakyBucketRateLimiter 只计量水位，放行的请求仍然可能成批到达下游；整形模式把任务放进有界队列，
+ * 由一个出水线程按固定间隔逐个取出交给执行器（如 CustomThreadPool::execute），下游看到的是恒定速率，没有突发。
+ *  - 队列为 ConcurrentLinkedQueue 加原子计数限制容量，提交是无锁的，队列满时 submit 返回 false；
+ *  - 出水线程空闲时 park，提交方在队列由空变为非空时 unpark 它；
+ *  - 出水时刻按 上一次出水时刻 + 间隔 推进，空闲后不积累额度，不会出现追赶式的突发；
+ *  - 统计队列深度、已出水数、拒绝数，以及每个任务从提交到交给执行器的平均、最大等待时间。
+ */
+public class LeakyBucketShaper {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final double interval;                       // 出水间隔（纳秒）
+    private final int queueCapacity;                     // 队列容量
+    private final Executor executor;                     // 下游执行器
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger(); // 队列中的任务数
+    private final Thread drainer;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();    // 执行器拒绝或抛出异常的任务数
+    private volatile long dispatched;                    // 已出水数，只由出水线程写
+    private volatile long totalWaitNanos;                // 只由出水线程写
+    private volatile long maxWaitNanos;                  // 只由出水线程写
+
+    /**
+     * @param leaksPerSecond 每秒出水的任务数
+     * @param queueCapacity  队列容量
+     * @param executor       下游执行器
+     */
+    public LeakyBucketShaper(double leaksPerSecond, int queueCapacity, Executor executor) {
+        if (!(leaksPerSecond > 0) || leaksPerSecond > NANOS_PER_SECOND || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Rate must be in (0, 1e9] per second and queue capacity positive");
+        }
+        this.interval = NANOS_PER_SECOND / leaksPerSecond;
+        this.queueCapacity = queueCapacity;
+        this.executor = executor;
+        this.drainer = new Thread(this::drain, "leaky-bucket-shaper");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * 提交任务，队列满或已关闭时返回 false
+     */
+    public boolean submit(Runnable task) {
+        if (shutdown) {
+            rejected.increment();
+            return false;
+        }
+        int current;
+        do {
+            current = depth.get();
+            if (current >= queueCapacity) {
+                rejected.increment();
+                return false;
+            }
+        } while (!depth.compareAndSet(current, current + 1));
+        if (shutdown) {
+            // 占位之后再检查一次：出水线程可能已经看到 depth 为 0 并退出
+            depth.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        queue.offer(new Task(task, System.nanoTime()));
+        if (current == 0) {
+            LockSupport.unpark(drainer);
+        }
+        return true;
+    }
+
+    /**
+     * 停止接收新任务，队列中已有的任务继续按速率出水
+     */
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(drainer);
+    }
+
+    /**
+     * 等待队列中的任务全部出水
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * 当前队列深度
+     */
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    public long getDispatchedCount() {
+        return dispatched;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * 已出水任务从提交到交给执行器的平均等待时间（毫秒）
+     */
+    public double getAverageWaitMillis() {
+        long count = dispatched;
+        return count == 0 ? 0 : totalWaitNanos / 1e6 / count;
+    }
+
+    /**
+     * 已出水任务的最大等待时间（毫秒）
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos / 1e6;
+    }
+
+    /**
+     * 每秒出水的任务数
+     */
+    public double getRate() {
+        return NANOS_PER_SECOND / interval;
+    }
+
+    private void drain() {
+        double nextSlot = System.nanoTime();
+        while (true) {
+            Task task = queue.poll();
+            if (task == null) {
+                // 先读 shutdown 再读 depth（与 submit 相反）：看到 depth 为 0 时，之后占位的提交方一定能看到 shutdown
+                boolean stopping = shutdown;
+                if (depth.get() == 0) {
+                    if (stopping) {
+                        break;
+                    }
+                    LockSupport.park(this);
+                } else {
+                    // 提交方已占位但还没入队
+                    Thread.yield();
+                }
+                continue;
+            }
+            depth.decrementAndGet();
+            long now = System.nanoTime();
+            if (nextSlot < now) {
+                // 空闲过，不积累额度
+                nextSlot = now;
+            }
+            long slot = (long) nextSlot;
+            while (slot - System.nanoTime() > 0) {
+                LockSupport.parkNanos(this, slot - System.nanoTime());
+            }
+            long wait = System.nanoTime() - task.submitNanos;
+            try {
+                executor.execute(task.runnable);
+            } catch (RuntimeException e) {
+                failed.increment();
+            }
+            totalWaitNanos += wait;
+            if (wait > maxWaitNanos) {
+                maxWaitNanos = wait;
+            }
+            dispatched++;
+            nextSlot += interval;
+        }
+        terminated.countDown();
+    }
+
+    private static final class Task {
+        final Runnable runnable;
+        final long submitNanos;
+
+        Task(Runnable runnable, long submitNanos) {
+            this.runnable = runnable;
+            this.submitNanos = submitNanos;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        CustomThreadPool threadPool = new CustomThreadPool(2, 4, 60, TimeUnit.SECONDS, 100,
+                new CustomThreadFactory(), new CustomRejectedExecutionHandler());
+        // 下游（如 LLM 接口）每秒最多承受 20 个请求，队列最多积压 50 个
+        LeakyBucketShaper shaper = LeakyBucketRateLimiter.create(20, 50).shaper(50, threadPool::execute);
+        long start = System.nanoTime();
+        int accepted = 0;
+        // 一次性突发 60 个任务
+        for (int i = 0; i < 60; i++) {
+            int taskId = i;
+            if (shaper.submit(() -> {
+                if (taskId % 10 == 0) {
+                    System.out.printf("Task %d 在 %d ms 执行%n", taskId,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            })) {
+                accepted++;
+            }
+        }
+        System.out.println("接收: " + accepted + ", 拒绝: " + shaper.getRejectedCount()
+                + ", 队列深度: " + shaper.getQueueDepth()); // 约 50, 约 10, 50（出水线程同时在取，会多接收几个）
+        shaper.shutdown();
+        shaper.awaitTermination(10, TimeUnit.SECONDS);
+        System.out.printf("出水: %d, 平均等待 %.1f ms, 最大等待 %.1f ms%n",
+                shaper.getDispatchedCount(), shaper.getAverageWaitMillis(), shaper.getMaxWaitMillis()); // 约 50, 约 1250, 约 2500
+        threadPool.shutdown();
+    }
+}
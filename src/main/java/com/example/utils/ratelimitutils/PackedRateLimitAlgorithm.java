@@ -0,0 +1,179 @@
+package com.example.utils.ratelimitutils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 状态可以打包进一个 long 的限流算法，供 KeyedRateLimiter 在原始类型数组中为每个 key 保存状态
+ * 实现必须是无状态的纯函数：给定旧状态、当前时间和申请的许可数，返回新状态或 REJECTED。
+ * 时间由调用方提供，单位为纳秒，从 0 开始单调递增。
+ */
+public interface PackedRateLimitAlgorithm {
+
+    /**
+     * 拒绝时的返回值，合法状态不会等于它
+     */
+    long REJECTED = Long.MIN_VALUE;
+
+    /**
+     * 新 key 的初始状态
+     */
+    long initialState(long nowNanos);
+
+    /**
+     * @return 放行后的新状态；许可不足时返回 REJECTED
+     */
+    long tryAcquire(long state, long nowNanos, int permits);
+
+    /**
+     * 预计还要多久才能获取到一个许可（纳秒），0 表示现在就可以
+     */
+    long nanosUntilAvailable(long state, long nowNanos);
+
+    /**
+     * 令牌桶（GCRA），状态为理论到达时间，初始时桶是满的
+     *
+     * @param permitsPerSecond 每秒添加的令牌数，可以是小数
+     * @param capacity         令牌桶容量
+     */
+    static PackedRateLimitAlgorithm tokenBucket(double permitsPerSecond, long capacity) {
+        return new Gcra(permitsPerSecond, capacity);
+    }
+
+    /**
+     * 漏桶（作为计量器使用时与 GCRA 等价：水位 = (tat - now) / interval），初始时桶是空的
+     *
+     * @param leaksPerSecond 每秒流出的请求数，可以是小数
+     * @param capacity       漏桶容量
+     */
+    static PackedRateLimitAlgorithm leakyBucket(double leaksPerSecond, long capacity) {
+        return new Gcra(leaksPerSecond, capacity);
+    }
+
+    /**
+     * 固定窗口，状态为 窗口序号（高 32 位）| 计数（低 32 位）
+     */
+    static PackedRateLimitAlgorithm fixedWindow(int limit, long window, TimeUnit unit) {
+        return new FixedWindow(limit, unit.toNanos(window));
+    }
+
+    /**
+     * 滑动窗口（两个相邻固定窗口加权估算），状态为 窗口序号（24 位）| 上一窗口计数（20 位）| 当前窗口计数（20 位）
+     *
+     * @param limit 窗口内最大请求数，不超过 2^20 - 1
+     */
+    static PackedRateLimitAlgorithm slidingWindow(int limit, long window, TimeUnit unit) {
+        return new SlidingWindow(limit, unit.toNanos(window));
+    }
+
+    final class Gcra implements PackedRateLimitAlgorithm {
+        private final double interval;   // 每个许可的间隔（纳秒）
+        private final long burstNanos;   // 容量对应的时间跨度（纳秒）
+
+        Gcra(double permitsPerSecond, long capacity) {
+            if (!(permitsPerSecond > 0) || permitsPerSecond > 1e9 || capacity <= 0) {
+                throw new IllegalArgumentException("Rate must be in (0, 1e9] per second and capacity positive");
+            }
+            this.interval = 1e9 / permitsPerSecond;
+            this.burstNanos = (long) (capacity * interval);
+        }
+
+        @Override
+        public long initialState(long nowNanos) {
+            return nowNanos - burstNanos;
+        }
+
+        @Override
+        public long tryAcquire(long state, long nowNanos, int permits) {
+            long next = Math.max(state, nowNanos - burstNanos) + (long) (permits * interval);
+            return next - nowNanos > 0 ? REJECTED : next;
+        }
+
+        @Override
+        public long nanosUntilAvailable(long state, long nowNanos) {
+            return Math.max(0, Math.max(state, nowNanos - burstNanos) + (long) interval - nowNanos);
+        }
+    }
+
+    final class FixedWindow implements PackedRateLimitAlgorithm {
+        private final int limit;
+        private final long windowNanos;
+
+        FixedWindow(int limit, long windowNanos) {
+            if (limit <= 0 || windowNanos <= 0) {
+                throw new IllegalArgumentException("Limit and window must be positive");
+            }
+            this.limit = limit;
+            this.windowNanos = windowNanos;
+        }
+
+        @Override
+        public long initialState(long nowNanos) {
+            return (nowNanos / windowNanos) << 32;
+        }
+
+        @Override
+        public long tryAcquire(long state, long nowNanos, int permits) {
+            long window = (nowNanos / windowNanos) & 0xFFFFFFFFL;
+            long count = (state >>> 32) == window ? state & 0xFFFFFFFFL : 0;
+            if (count + permits > limit) {
+                return REJECTED;
+            }
+            return window << 32 | (count + permits);
+        }
+
+        @Override
+        public long nanosUntilAvailable(long state, long nowNanos) {
+            return tryAcquire(state, nowNanos, 1) == REJECTED ? windowNanos - nowNanos % windowNanos : 0;
+        }
+    }
+
+    final class SlidingWindow implements PackedRateLimitAlgorithm {
+        private static final long WINDOW_MASK = (1L << 24) - 1;
+        private static final long COUNT_MASK = (1L << 20) - 1;
+
+        private final int limit;
+        private final long windowNanos;
+
+        SlidingWindow(int limit, long windowNanos) {
+            if (limit <= 0 || limit > COUNT_MASK || windowNanos <= 0) {
+                throw new IllegalArgumentException("Limit must be in [1, " + COUNT_MASK + "] and window positive");
+            }
+            this.limit = limit;
+            this.windowNanos = windowNanos;
+        }
+
+        @Override
+        public long initialState(long nowNanos) {
+            return ((nowNanos / windowNanos) & WINDOW_MASK) << 40;
+        }
+
+        @Override
+        public long tryAcquire(long state, long nowNanos, int permits) {
+            long window = (nowNanos / windowNanos) & WINDOW_MASK;
+            long diff = (window - (state >>> 40)) & WINDOW_MASK;
+            long previous;
+            long current;
+            if (diff == 0) {
+                previous = (state >>> 20) & COUNT_MASK;
+                current = state & COUNT_MASK;
+            } else {
+                previous = diff == 1 ? state & COUNT_MASK : 0;
+                current = 0;
+            }
+            // 上一窗口按未滑出的比例计入
+            double elapsed = (double) (nowNanos % windowNanos) / windowNanos;
+            if (previous * (1 - elapsed) + current + permits > limit) {
+                return REJECTED;
+            }
+            return window << 40 | previous << 20 | (current + permits);
+        }
+
+        /**
+         * 按到下一个窗口的时间估算
+         */
+        @Override
+        public long nanosUntilAvailable(long state, long nowNanos) {
+            return tryAcquire(state, nowNanos, 1) == REJECTED ? windowNanos - nowNanos % windowNanos : 0;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.utils.ratelimitutils;
+
+/**
+ * 限流器的公共接口
+ * 令牌桶、漏桶、固定窗口、滑动窗口以及基于 Redis 的分布式限流器都实现了它，调用方（如 Web 层的拦截器）不需要关心具体算法。
+ */
+public interface RateLimiter {
+
+    /**
+     * 尝试获取一个许可，不等待
+     */
+    boolean tryAcquire();
+
+    /**
+     * 预计还要多久才能获取到一个许可（毫秒），0 表示现在就可以；用于被拒绝时告诉调用方何时重试
+     */
+    long getRetryAfterMillis();
+}
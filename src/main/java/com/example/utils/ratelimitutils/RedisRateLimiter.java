@@ -0,0 +1,176 @@
+package com.example.utils.ratelimitutils;
+
+import redis.clients.jedis.JedisPool;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 Redis 的分布式限流器基类，状态保存在 Redis 中，所有节点共享同一个全局配额
+ * 子类的 Lua 脚本一次往返原子地完成"读取状态 - 判断 - 扣减"，时间取 Redis 服务器的 TIME，不受各节点时钟偏差影响。
+ * 脚本返回 {放行数, 至少还要等待的毫秒数}：申请 N 个许可被拒绝后，在等待时间内本地直接拒绝不少于 N 个许可的申请，
+ * 过载时不会每个请求都访问 Redis；更小的申请仍然访问 Redis，不会被大申请的等待时间挡住。
+ *
+ * 租借模式（leaseSize > 1）：本地许可用完时一次从 Redis 取 leaseSize 个（不足时取剩余的全部），之后在本地扣减，
+ * 每个请求访问 Redis 的次数约为 1 / leaseSize。租来的许可在 leaseMillis 后过期作废，所以：
+ *  - 不会凭空多出许可，N 个节点任意 leaseMillis 时长内多放行的量不超过 N * leaseSize（租得早、用得晚造成的时间平移）；
+ *  - 节点过期作废或崩溃丢失的许可不会归还，流量不均匀时全局放行量会略低于配置值。
+ * leaseSize 取全局速率 * leaseMillis / 节点数的几分之一比较合适。
+ */
+public abstract class RedisRateLimiter implements RateLimiter {
+    protected static final String KEY_PREFIX = "rate_limit:";
+
+    protected final JedisPool jedisPool;
+    protected final String key;
+    private final int leaseSize;                 // 每次租借的许可数，不大于 1 时不租借
+    private final long leaseNanos;               // 租来的许可的有效期（纳秒）
+    private volatile Lease lease;                // 当前租来的许可
+    private volatile Rejection rejection;        // 最近一次被 Redis 拒绝的申请，null 表示没有
+
+    protected RedisRateLimiter(JedisPool jedisPool, String key, int leaseSize, long leaseMillis) {
+        this.jedisPool = jedisPool;
+        this.key = key;
+        this.leaseSize = leaseSize;
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    public boolean tryAcquire(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be positive");
+        }
+        Lease current = lease;
+        if (current != null && current.take(permits)) {
+            return true;
+        }
+        Rejection rejected = rejection;
+        if (rejected != null && rejected.covers(permits)) {
+            return false;
+        }
+        if (leaseSize <= 1) {
+            return granted(request(permits, false), permits) == permits;
+        }
+        synchronized (this) {
+            // 其他线程可能已经租到了
+            current = lease;
+            if (current != null && current.take(permits)) {
+                return true;
+            }
+            // 不足时放行剩余的全部，只有一个都没有时才被拒绝，拒绝记录适用于任意申请
+            long granted = granted(request(Math.max(permits, leaseSize), true), 1);
+            if (granted >= permits) {
+                lease = new Lease((int) (granted - permits), System.nanoTime() + leaseNanos);
+                return true;
+            }
+            // 不够本次请求，留给后续更小的请求
+            lease = granted > 0 ? new Lease((int) granted, System.nanoTime() + leaseNanos) : null;
+            return false;
+        }
+    }
+
+    /**
+     * 最近一次被 Redis 拒绝时脚本给出的等待时间的剩余部分
+     */
+    @Override
+    public long getRetryAfterMillis() {
+        Rejection rejected = rejection;
+        if (leasedPermits() > 0 || rejected == null) {
+            return 0;
+        }
+        long wait = rejected.until - System.nanoTime();
+        return wait > 0 ? TimeUnit.NANOSECONDS.toMillis(wait) + 1 : 0;
+    }
+
+    /**
+     * 本地租来的剩余许可数
+     */
+    public int leasedPermits() {
+        Lease current = lease;
+        return current == null || current.expired() ? 0 : current.remaining.get();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 执行限流脚本
+     *
+     * @param permits 申请的许可数
+     * @param partial 不足时是否放行剩余的全部
+     * @return 脚本结果 {放行数, 至少还要等待的毫秒数}
+     */
+    protected abstract Object request(int permits, boolean partial);
+
+    /**
+     * @param needed 这次申请至少需要的许可数，少于它视为被拒绝
+     */
+    private long granted(Object result, int needed) {
+        List<?> values = (List<?>) result;
+        long granted = (Long) values.get(0);
+        if (granted < needed) {
+            rejection = new Rejection(needed, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((Long) values.get(1)));
+        } else {
+            // 更小的申请成功不代表更大的申请也能成功
+            Rejection rejected = rejection;
+            if (rejected != null && granted >= rejected.permits) {
+                rejection = null;
+            }
+        }
+        return granted;
+    }
+
+    /**
+     * 一次被拒绝的申请：until（nanoTime）之前不少于 permits 个许可的申请本地直接拒绝
+     */
+    private static final class Rejection {
+        final int permits;
+        final long until;
+
+        Rejection(int permits, long until) {
+            this.permits = permits;
+            this.until = until;
+        }
+
+        boolean covers(int requested) {
+            return requested >= permits && System.nanoTime() - until < 0;
+        }
+    }
+
+    /**
+     * 一批租来的许可
+     */
+    private static final class Lease {
+        final AtomicInteger remaining;
+        final long expiresAt;
+
+        Lease(int remaining, long expiresAt) {
+            this.remaining = new AtomicInteger(remaining);
+            this.expiresAt = expiresAt;
+        }
+
+        boolean expired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+
+        boolean take(int permits) {
+            if (expired()) {
+                return false;
+            }
+            while (true) {
+                int current = remaining.get();
+                if (current < permits) {
+                    return false;
+                }
+                if (remaining.compareAndSet(current, current - permits)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
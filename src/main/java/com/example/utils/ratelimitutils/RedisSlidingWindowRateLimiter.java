@@ -0,0 +1,115 @@
+package com.example.utils.ratelimitutils;
+
+import com.example.utils.redis.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 分布式滑动窗口（滑动窗口计数）
+ * Redis 中一个哈希 rate_limit:sw:{name}，只保存当前窗口序号、上一窗口计数和当前窗口计数，内存与 limit 无关；
+ * 上一窗口按仍在滑动窗口内的时间比例计入，与 SlidingWindowRateLimiter 的计数模式（两个子窗口）相同，
+ * 假设上一窗口内的请求均匀分布，请求集中在窗口边界时误差最大。key 在两个窗口后过期。
+ */
+public class RedisSlidingWindowRateLimiter extends RedisRateLimiter {
+
+    /**
+     * KEYS[1] 窗口 key；ARGV: 窗口内最大请求数, 窗口大小（毫秒）, 申请数, 不足时是否放行剩余全部（1/0）
+     * 返回 {放行数, 放行数为 0 时至少还要等待的毫秒数}
+     */
+    private static final LuaScript ACQUIRE_SCRIPT = new LuaScript(
+            "redis.replicate_commands() " +
+            "local t = redis.call('time') " +
+            "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+            "local limit = tonumber(ARGV[1]) " +
+            "local window = tonumber(ARGV[2]) " +
+            "local requested = tonumber(ARGV[3]) " +
+            "local id = math.floor(now / window) " +
+            "local state = redis.call('hmget', KEYS[1], 'id', 'prev', 'curr') " +
+            "local sid = tonumber(state[1]) or id " +
+            "local prev = tonumber(state[2]) or 0 " +
+            "local curr = tonumber(state[3]) or 0 " +
+            "if sid == id - 1 then prev = curr curr = 0 " +
+            "elseif sid ~= id then prev = 0 curr = 0 end " +
+            "local elapsed = (now % window) / window " +
+            "local available = math.floor(limit - prev * (1 - elapsed) - curr) " +
+            "local granted = 0 " +
+            "if available >= requested then granted = requested " +
+            "elseif ARGV[4] == '1' and available > 0 then granted = available end " +
+            "curr = curr + granted " +
+            "redis.call('hset', KEYS[1], 'id', id, 'prev', prev, 'curr', curr) " +
+            "redis.call('pexpire', KEYS[1], window * 2) " +
+            "local wait = 0 " +
+            "if granted == 0 then " +
+            "  if curr + 1 > limit or prev == 0 then wait = window - now % window " +
+            "  else wait = math.max(1, math.ceil((1 - (limit - curr - 1) / prev - elapsed) * window)) end " +
+            "end " +
+            "return {granted, wait}");
+
+    private final int limit;
+    private final long windowMillis;
+
+    /**
+     * 每个请求访问一次 Redis
+     *
+     * @param limit        全局窗口内最大请求数
+     * @param windowMillis 窗口大小（毫秒）
+     */
+    public RedisSlidingWindowRateLimiter(JedisPool jedisPool, String name, int limit, long windowMillis) {
+        this(jedisPool, name, limit, windowMillis, 1, 0);
+    }
+
+    /**
+     * 租借模式
+     *
+     * @param leaseSize   每次从 Redis 租借的请求数
+     * @param leaseMillis 租来的许可的有效期（毫秒）
+     */
+    public RedisSlidingWindowRateLimiter(JedisPool jedisPool, String name, int limit, long windowMillis,
+                                         int leaseSize, long leaseMillis) {
+        super(jedisPool, KEY_PREFIX + "sw:" + name, leaseSize, leaseMillis);
+        if (limit <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("Limit and window must be positive");
+        }
+        if (leaseSize > limit) {
+            throw new IllegalArgumentException("Lease size must not exceed limit");
+        }
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    protected Object request(int permits, boolean partial) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return ACQUIRE_SCRIPT.eval(jedis, Collections.singletonList(key), Arrays.asList(
+                    String.valueOf(limit), String.valueOf(windowMillis),
+                    String.valueOf(permits), partial ? "1" : "0"));
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        JedisPool jedisPool = new JedisPool("localhost", 6379);
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(KEY_PREFIX + "sw:demo");
+        }
+        // 两个节点共享每秒 10 个请求
+        RedisSlidingWindowRateLimiter node1 = new RedisSlidingWindowRateLimiter(jedisPool, "demo", 10, 1000);
+        RedisSlidingWindowRateLimiter node2 = new RedisSlidingWindowRateLimiter(jedisPool, "demo", 10, 1000);
+        for (int i = 0; i < 20; i++) {
+            RedisSlidingWindowRateLimiter node = i % 2 == 0 ? node1 : node2;
+            System.out.println("Request " + i + ": " + (node.tryAcquire() ? "Allowed" : "Denied"));
+            Thread.sleep(50); // 模拟请求间隔
+        }
+        jedisPool.close();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.utils.ratelimitutils;
+
+import com.example.utils.redis.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 分布式令牌桶
+ * Redis 中一个哈希 rate_limit:tb:{name}，保存剩余令牌数（可以是小数）和上次补充的时间（Redis 服务器时间，毫秒，带小数），
+ * 每次请求先按经过的时间补充令牌再扣减；key 在桶补满所需的时间后过期，空闲的桶不占内存。
+ */
+public class RedisTokenBucketRateLimiter extends RedisRateLimiter {
+
+    /**
+     * KEYS[1] 令牌桶 key；ARGV: 容量, 每秒添加的令牌数, 申请数, 不足时是否放行剩余全部（1/0）
+     * 返回 {放行数, 放行数为 0 时至少还要等待的毫秒数（不足时放行剩余全部的模式按 1 个令牌计算，否则按申请数计算）}
+     */
+    private static final LuaScript ACQUIRE_SCRIPT = new LuaScript(
+            "redis.replicate_commands() " +
+            "local t = redis.call('time') " +
+            "local now = tonumber(t[1]) * 1000 + tonumber(t[2]) / 1000 " +
+            "local capacity = tonumber(ARGV[1]) " +
+            "local rate = tonumber(ARGV[2]) / 1000 " +
+            "local requested = tonumber(ARGV[3]) " +
+            "local state = redis.call('hmget', KEYS[1], 'tokens', 'ts') " +
+            "local tokens = tonumber(state[1]) or capacity " +
+            "local ts = tonumber(state[2]) or now " +
+            "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate) " +
+            "local granted = 0 " +
+            "if tokens >= requested then granted = requested " +
+            "elseif ARGV[4] == '1' then granted = math.floor(tokens) end " +
+            "tokens = tokens - granted " +
+            "redis.call('hset', KEYS[1], 'tokens', string.format('%.17g', tokens), 'ts', string.format('%.3f', now)) " +
+            "redis.call('pexpire', KEYS[1], math.ceil(capacity / rate) + 1000) " +
+            "local wait = 0 " +
+            "if granted == 0 then " +
+            "local needed = requested " +
+            "if ARGV[4] == '1' then needed = 1 end " +
+            "wait = math.max(1, math.ceil((needed - tokens) / rate)) " +
+            "end " +
+            "return {granted, wait}");
+
+    private final long capacity;
+    private final double permitsPerSecond;
+
+    /**
+     * 每个请求访问一次 Redis
+     *
+     * @param capacity         令牌桶容量
+     * @param permitsPerSecond 全局每秒添加的令牌数
+     */
+    public RedisTokenBucketRateLimiter(JedisPool jedisPool, String name, long capacity, double permitsPerSecond) {
+        this(jedisPool, name, capacity, permitsPerSecond, 1, 0);
+    }
+
+    /**
+     * 租借模式
+     *
+     * @param leaseSize   每次从 Redis 租借的令牌数
+     * @param leaseMillis 租来的令牌的有效期（毫秒）
+     */
+    public RedisTokenBucketRateLimiter(JedisPool jedisPool, String name, long capacity, double permitsPerSecond,
+                                       int leaseSize, long leaseMillis) {
+        super(jedisPool, KEY_PREFIX + "tb:" + name, leaseSize, leaseMillis);
+        if (capacity <= 0 || !(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("Capacity and rate must be positive");
+        }
+        if (leaseSize > capacity) {
+            throw new IllegalArgumentException("Lease size must not exceed capacity");
+        }
+        this.capacity = capacity;
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    @Override
+    protected Object request(int permits, boolean partial) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return ACQUIRE_SCRIPT.eval(jedis, Collections.singletonList(key), Arrays.asList(
+                    String.valueOf(capacity), String.valueOf(permitsPerSecond),
+                    String.valueOf(permits), partial ? "1" : "0"));
+        }
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public double getRate() {
+        return permitsPerSecond;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        JedisPool jedisPool = new JedisPool("localhost", 6379);
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(KEY_PREFIX + "tb:demo", KEY_PREFIX + "tb:demo-lease");
+        }
+        // 两个节点共享每秒 100 个、容量 100 的全局配额
+        RedisTokenBucketRateLimiter node1 = new RedisTokenBucketRateLimiter(jedisPool, "demo", 100, 100);
+        RedisTokenBucketRateLimiter node2 = new RedisTokenBucketRateLimiter(jedisPool, "demo", 100, 100);
+        int allowed = 0;
+        for (int i = 0; i < 150; i++) {
+            if ((i % 2 == 0 ? node1 : node2).tryAcquire()) {
+                allowed++;
+            }
+        }
+        System.out.println("两个节点共放行: " + allowed); // 约 100，循环期间还会补充少量令牌
+        Thread.sleep(100);
+        System.out.println("100 毫秒后: " + node1.tryAcquire(5)); // true，约补充了 10 个
+
+        // 租借模式：每次租 20 个，有效期 200 毫秒
+        RedisTokenBucketRateLimiter leased = new RedisTokenBucketRateLimiter(jedisPool, "demo-lease", 1000, 1000, 20, 200);
+        allowed = 0;
+        for (int i = 0; i < 500; i++) {
+            if (leased.tryAcquire()) {
+                allowed++;
+            }
+        }
+        System.out.println("租借模式放行: " + allowed + ", 本地剩余: " + leased.leasedPermits()); // 500, 0
+        jedisPool.close();
+    }
+}
@@ -1,34 +1,212 @@
 package com.example.utils.ratelimitutils;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * 限流-滑动窗口
+ * 两种模式：
+ *  - 日志模式（默认）：记录窗口内每个放行请求的时间戳，任意长度为 window 的区间内放行数都不超过 limit，精确；
+ *    时间戳存放在按需扩容的 long 环形数组中，内存为 O(limit)（每个请求 8 字节，没有装箱和链表节点）。
+ *  - 计数模式：窗口切分为 buckets 个子窗口，环形数组中只保存每个子窗口的计数，内存和时间都是 O(buckets)，与 limit 无关。
+ *    估算时最早那个部分滑出窗口的子窗口按仍在窗口内的时间比例计入（假设其中的请求均匀分布），
+ *    请求集中在子窗口边界时会有误差：任意区间内的放行数最多超出约 limit / buckets，子窗口越多越接近日志模式。
  */
-public class SlidingWindowRateLimiter {
+public class SlidingWindowRateLimiter implements RateLimiter {
+    private static final int INITIAL_LOG_CAPACITY = 16;
+
     private final int limit; // 窗口内允许的最大请求数
-    private final long windowSizeInMillis; // 窗口大小（毫秒）
-    private final Queue<Long> timestamps; // 存储请求的时间戳
+    private final long windowNanos; // 窗口大小（纳秒）
+    private final LongSupplier clock; // 时钟（纳秒）
+
+    // 日志模式
+    private long[] timestamps; // 放行请求的时间戳，环形数组
+    private int head; // 最早时间戳的下标
+    private int size; // 窗口内的时间戳数
+
+    // 计数模式
+    private final int buckets; // 子窗口数，0 表示日志模式
+    private final long bucketNanos; // 子窗口大小（纳秒）
+    private final long[] bucketIds; // 各槽位当前对应的子窗口序号
+    private final long[] counts; // 各槽位的计数
 
+    /**
+     * 日志模式
+     */
     public SlidingWindowRateLimiter(int limit, long windowSizeInMillis) {
+        this(limit, TimeUnit.MILLISECONDS.toNanos(windowSizeInMillis), 0, System::nanoTime);
+    }
+
+    /**
+     * 计数模式
+     *
+     * @param buckets 子窗口数，窗口大小必须能切分出不小于 1 毫秒的子窗口
+     */
+    public SlidingWindowRateLimiter(int limit, long windowSizeInMillis, int buckets) {
+        this(limit, TimeUnit.MILLISECONDS.toNanos(windowSizeInMillis), checkBuckets(buckets), System::nanoTime);
+        if (windowSizeInMillis < buckets) {
+            throw new IllegalArgumentException("Window must be at least one millisecond per bucket");
+        }
+    }
+
+    /**
+     * @param buckets 子窗口数，0 表示日志模式
+     * @param clock   时钟（纳秒），测试时可以替换
+     */
+    SlidingWindowRateLimiter(int limit, long windowNanos, int buckets, LongSupplier clock) {
+        if (limit <= 0 || windowNanos <= 0) {
+            throw new IllegalArgumentException("Limit and window must be positive");
+        }
         this.limit = limit;
-        this.windowSizeInMillis = windowSizeInMillis;
-        this.timestamps = new LinkedList<>();
+        this.windowNanos = windowNanos;
+        this.clock = clock;
+        this.buckets = buckets;
+        if (buckets > 0) {
+            this.bucketNanos = windowNanos / buckets;
+            // 多一个槽位保存部分滑出窗口的子窗口
+            this.bucketIds = new long[buckets + 1];
+            this.counts = new long[buckets + 1];
+            Arrays.fill(bucketIds, Long.MIN_VALUE);
+        } else {
+            this.bucketNanos = 0;
+            this.bucketIds = null;
+            this.counts = null;
+            this.timestamps = new long[Math.min(limit, INITIAL_LOG_CAPACITY)];
+        }
     }
 
+    private static int checkBuckets(int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("Buckets must be positive");
+        }
+        return buckets;
+    }
+
+    @Override
     public synchronized boolean tryAcquire() {
-        long currentTime = System.currentTimeMillis();
-        // 移除窗口外的旧时间戳
-        while (!timestamps.isEmpty() && currentTime - timestamps.peek() > windowSizeInMillis) {
-            timestamps.poll();
+        long currentTime = clock.getAsLong();
+        return buckets > 0 ? tryAcquireCounter(currentTime) : tryAcquireLog(currentTime);
+    }
+
+    /**
+     * 当前窗口内的请求数（计数模式下为估算值）
+     */
+    public synchronized long currentCount() {
+        long currentTime = clock.getAsLong();
+        return buckets > 0 ? Math.round(estimate(currentTime)) : evictExpired(currentTime);
+    }
+
+    /**
+     * 日志模式下为最早的时间戳滑出窗口的时间；计数模式下为估算值降到 limit - 1 的时间（假设期间没有新请求）
+     */
+    @Override
+    public synchronized long getRetryAfterMillis() {
+        long currentTime = clock.getAsLong();
+        long wait;
+        if (buckets > 0) {
+            wait = estimate(currentTime) + 1 > limit ? counterWaitNanos(currentTime) : 0;
+        } else {
+            wait = evictExpired(currentTime) >= limit ? timestamps[head] + windowNanos + 1 - currentTime : 0;
         }
+        return wait > 0 ? TimeUnit.NANOSECONDS.toMillis(wait) + 1 : 0;
+    }
+
+    public boolean isCounterMode() {
+        return buckets > 0;
+    }
+
+    private boolean tryAcquireLog(long currentTime) {
         // 检查当前窗口的请求数是否超过限制
-        if (timestamps.size() < limit) {
-            timestamps.offer(currentTime);
-            return true;
+        if (evictExpired(currentTime) >= limit) {
+            return false;
+        }
+        if (size == timestamps.length) {
+            grow();
+        }
+        timestamps[(head + size) % timestamps.length] = currentTime;
+        size++;
+        return true;
+    }
+
+    /**
+     * 移除窗口外的旧时间戳，返回剩余数量
+     */
+    private int evictExpired(long currentTime) {
+        while (size > 0 && currentTime - timestamps[head] > windowNanos) {
+            head = (head + 1) % timestamps.length;
+            size--;
+        }
+        return size;
+    }
+
+    private void grow() {
+        long[] larger = new long[(int) Math.min(limit, timestamps.length * 2L)];
+        for (int i = 0; i < size; i++) {
+            larger[i] = timestamps[(head + i) % timestamps.length];
+        }
+        timestamps = larger;
+        head = 0;
+    }
+
+    private boolean tryAcquireCounter(long currentTime) {
+        if (estimate(currentTime) + 1 > limit) {
+            return false;
+        }
+        long id = Math.floorDiv(currentTime, bucketNanos);
+        int slot = (int) Math.floorMod(id, (long) counts.length);
+        if (bucketIds[slot] != id) {
+            bucketIds[slot] = id;
+            counts[slot] = 0;
+        }
+        counts[slot]++;
+        return true;
+    }
+
+    /**
+     * 窗口 (now - window, now] 内的估算请求数：
+     * 当前子窗口及之前 buckets - 1 个子窗口全部计入，再往前一个子窗口按仍在窗口内的比例计入
+     */
+    private double estimate(long currentTime) {
+        long id = Math.floorDiv(currentTime, bucketNanos);
+        double elapsed = (double) Math.floorMod(currentTime, bucketNanos) / bucketNanos;
+        double total = 0;
+        for (int slot = 0; slot < counts.length; slot++) {
+            long age = id - bucketIds[slot];
+            if (age >= 0 && age < buckets) {
+                total += counts[slot];
+            } else if (age == buckets) {
+                total += counts[slot] * (1 - elapsed);
+            }
         }
-        return false;
+        return total;
+    }
+
+    /**
+     * 逐个子窗口向后推算：在子窗口 id 内，完整计入的部分为 full，部分滑出的最早子窗口计数为 oldest，
+     * 估算值 full + oldest * (1 - elapsed) 随 elapsed 线性下降，解出降到 limit - 1 时的 elapsed
+     */
+    private long counterWaitNanos(long currentTime) {
+        long id = Math.floorDiv(currentTime, bucketNanos);
+        for (long current = id; current <= id + buckets; current++) {
+            double full = 0;
+            double oldest = 0;
+            for (int slot = 0; slot < counts.length; slot++) {
+                long age = current - bucketIds[slot];
+                if (age >= 0 && age < buckets) {
+                    full += counts[slot];
+                } else if (age == buckets) {
+                    oldest = counts[slot];
+                }
+            }
+            if (full + 1 > limit) {
+                continue;
+            }
+            double elapsed = oldest > 0 ? Math.max(0, 1 - (limit - 1 - full) / oldest) : 0;
+            long available = current * bucketNanos + (long) Math.ceil(elapsed * bucketNanos);
+            return Math.max(0, available - currentTime);
+        }
+        return windowNanos;
     }
 
     public static void main(String[] args) throws InterruptedException {
@@ -37,5 +215,15 @@ public class SlidingWindowRateLimiter {
             System.out.println("Request " + i + ": " + (limiter.tryAcquire() ? "Allowed" : "Denied"));
             Thread.sleep(100); // 模拟请求间隔
         }
+
+        // 计数模式：每秒 10 万个请求只需 10 个子窗口计数
+        SlidingWindowRateLimiter counter = new SlidingWindowRateLimiter(100_000, 1000, 10);
+        int allowed = 0;
+        for (int i = 0; i < 200_000; i++) {
+            if (counter.tryAcquire()) {
+                allowed++;
+            }
+        }
+        System.out.println("计数模式放行: " + allowed + ", 估算窗口内请求数: " + counter.currentCount()); // 100000
     }
-}
\ No newline at end of file
+}
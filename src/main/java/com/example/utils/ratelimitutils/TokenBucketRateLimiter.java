@@ -1,44 +1,76 @@
 package com.example.utils.ratelimitutils;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 令牌桶算法
+ * 以 GCRA（通用信元速率算法）实现，与令牌桶等价：每个令牌的生成间隔为 interval，
+ * 状态只有一个 long —— 理论到达时间 TAT（下一个令牌在"桶空"视角下的可用时刻），存在一个 AtomicLong 中，用 CAS 更新，无锁。
+ * 获取 n 个令牌：newTat = max(tat, now) + n * interval，newTat - now 不超过 capacity * interval 即放行。
+ * 时间取 System.nanoTime()，速率可以是小数（如每秒 0.5 个），不再受"令牌/毫秒"整数的限制。
+ * 除立即返回的 tryAcquire 外，还支持按预约等待的 acquire、tryAcquire(permits, timeout) 和 acquireAsync，见 GcraRateLimiter。
  */
-public class TokenBucketRateLimiter {
-    private final long capacity; // 令牌桶容量
-    private final long rate; // 令牌添加速率（令牌/毫秒）
-    private final AtomicLong tokens; // 当前令牌数
-    private long lastRefillTime; // 上次添加令牌时间
+public class TokenBucketRateLimiter extends GcraRateLimiter {
 
+    /**
+     * @param capacity 令牌桶容量
+     * @param rate     令牌添加速率（令牌/毫秒）
+     */
     public TokenBucketRateLimiter(long capacity, long rate) {
-        this.capacity = capacity;
-        this.rate = rate;
-        this.tokens = new AtomicLong(capacity);
-        this.lastRefillTime = System.currentTimeMillis();
+        this(capacity, rate * 1000.0);
     }
 
-    public synchronized boolean tryAcquire() {
-        long currentTime = System.currentTimeMillis();
-        // 计算新增的令牌数
-        long refilled = (currentTime - lastRefillTime) * rate;
-        if (refilled > 0) {
-            tokens.set(Math.min(capacity, tokens.get() + refilled));
-            lastRefillTime = currentTime;
-        }
-        // 检查是否有足够的令牌
-        if (tokens.get() > 0) {
-            tokens.decrementAndGet();
-            return true;
-        }
-        return false;
+    private TokenBucketRateLimiter(long capacity, double permitsPerSecond) {
+        // 初始时桶是满的
+        super(capacity, permitsPerSecond);
     }
 
-    public static void main(String[] args) throws InterruptedException {
-        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1); // 容量 10，每秒添加 1 个令牌
+    /**
+     * 按每秒速率创建，支持小数速率
+     *
+     * @param permitsPerSecond 每秒添加的令牌数，如 0.5 表示每 2 秒一个
+     * @param capacity         令牌桶容量
+     */
+    public static TokenBucketRateLimiter create(double permitsPerSecond, long capacity) {
+        return new TokenBucketRateLimiter(capacity, permitsPerSecond);
+    }
+
+    public static void main(String[] args) throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1); // 容量 10，每毫秒添加 1 个令牌
         for (int i = 0; i < 20; i++) {
             System.out.println("Request " + i + ": " + (limiter.tryAcquire() ? "Allowed" : "Denied"));
             Thread.sleep(100); // 模拟请求间隔
         }
+
+        // 小数速率：每秒 2.5 个，容量 5
+        TokenBucketRateLimiter slow = TokenBucketRateLimiter.create(2.5, 5);
+        int allowed = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2)) {
+            if (slow.tryAcquire()) {
+                allowed++;
+            }
+            Thread.sleep(1);
+        }
+        System.out.println("2 秒内放行: " + allowed); // 5 + 2 * 2.5 = 10
+        System.out.println("一次获取 3 个: " + slow.tryAcquire(3)); // false
+
+        // 等待获取：每秒 10 个，容量 1，批量任务不再需要 tryAcquire + sleep 轮询
+        TokenBucketRateLimiter importer = TokenBucketRateLimiter.create(10, 1);
+        start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            importer.acquire(1);
+        }
+        System.out.println("阻塞获取 5 个耗时(ms): " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)); // 约 400
+        System.out.println("最多等 50ms: " + importer.tryAcquire(1, 50, TimeUnit.MILLISECONDS)); // false，要等约 100ms
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[5];
+        StringBuffer order = new StringBuffer();
+        for (int i = 0; i < futures.length; i++) {
+            int id = i;
+            futures[i] = importer.acquireAsync(1).thenRun(() -> order.append(id));
+        }
+        CompletableFuture.allOf(futures).get();
+        System.out.println("异步获取完成顺序: " + order); // 01234
     }
 }
@@ -0,0 +1,84 @@
+package com.example.utils.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Lua 脚本封装
+ * 脚本的 SHA1 在本地计算，调用时使用 EVALSHA，每次只传 40 字节的摘要而不是完整脚本；
+ * 服务端脚本缓存中没有该脚本（重启、SCRIPT FLUSH、主从切换）时返回 NOSCRIPT，回退为 EVAL，EVAL 会把脚本重新放入缓存。
+ *
+ * pipeline 中无法就地回退：先调用 load 确保脚本已缓存，再用 evalsha(Pipeline...) 入队，
+ * 结果中出现 NOSCRIPT（isNoScript）时由调用方改用 eval 单独重试对应的调用。
+ */
+public class LuaScript {
+
+    private final String script;
+    private final String sha1;
+
+    public LuaScript(String script) {
+        this.script = script;
+        this.sha1 = sha1Hex(script);
+    }
+
+    /**
+     * 执行脚本，优先 EVALSHA，NOSCRIPT 时回退 EVAL
+     */
+    public Object eval(Jedis jedis, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(sha1, keys, args);
+        } catch (JedisNoScriptException e) {
+            return jedis.eval(script, keys, args);
+        }
+    }
+
+    /**
+     * 在 pipeline 中以 EVALSHA 方式入队
+     */
+    public Response<Object> evalsha(Pipeline pipeline, List<String> keys, List<String> args) {
+        return pipeline.evalsha(sha1, keys, args);
+    }
+
+    /**
+     * 把脚本加载到服务端缓存（SCRIPT LOAD），在 pipeline 批量调用前使用
+     */
+    public void load(Jedis jedis) {
+        jedis.scriptLoad(script);
+    }
+
+    /**
+     * pipeline 返回的结果是否为 NOSCRIPT 错误
+     */
+    public static boolean isNoScript(Object result) {
+        return result instanceof JedisNoScriptException;
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    private static String sha1Hex(String script) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 algorithm not found", e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.utils.redis.bloomfilter;
+
+import com.example.utils.HashUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分块布隆过滤器（Blocked Bloom Filter）
+ * 每个元素先选定一个 512 位（64 字节，一个缓存行）的块，k 个比特都落在该块内，
+ * 因此一个元素只需要一条 BITFIELD 命令（k 个 SET/GET u1 子命令），而不是 k 条 SETBIT/GETBIT，
+ * Redis 端也只触碰一个缓存行。
+ *
+ * 代价是误判率略高：块内负载服从泊松分布，负载偏高的块误判更多。
+ * 位图大小 m = 2^29、k = 5 时的理论误判率对比（见 {@link #standardFpp} 与 {@link #blockedFpp}）：
+ * <pre>
+ *   插入数量 n     标准布局          分块布局(B=512)   比值
+ *   1,000,000     6.8e-11          3.7e-09          53.9
+ *   10,000,000    5.6e-06          1.2e-05          2.1
+ *   50,000,000    7.2e-03          8.0e-03          1.1
+ *   100,000,000   8.2e-02          8.4e-02          1.0
+ * </pre>
+ * 在位图比较空时误判率相对差距大，但绝对值仍然极低；接近设计容量时两者基本一致。
+ * 运行 main 方法可以打印任意参数下的对比。
+ */
+public class BlockedBloomFilter {
+
+    private static final String REDIS_KEY = "blocked_bloom_filter";
+    private static final int BIT_SIZE = 2 << 28; // 位图大小，约为2^29
+    private static final int HASH_COUNT = 5;    // 哈希函数个数
+    private static final int BLOCK_BITS = 512;  // 块大小（比特），对应一个 64 字节缓存行
+    private static final int BLOCK_COUNT = BIT_SIZE / BLOCK_BITS; // 块数量，2 的幂
+    private static final int BLOCK_SHIFT = 9;   // log2(BLOCK_BITS)
+
+    private Jedis jedis;
+
+    public BlockedBloomFilter(Jedis jedis) {
+        this.jedis = jedis;
+    }
+
+    /**
+     * 添加单个元素到布隆过滤器
+     */
+    public void add(String item) {
+        addAll(Collections.singletonList(item));
+    }
+
+    /**
+     * 批量添加元素，每个元素一条 BITFIELD 命令，整体一个 pipeline
+     */
+    public void addAll(List<String> items) {
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (String item : items) {
+                pipeline.bitfield(REDIS_KEY, bitfieldArgs(item, true));
+            }
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * 检查元素是否可能存在于布隆过滤器中
+     */
+    public boolean contains(String item) {
+        return containsAll(Collections.singletonList(item))[0];
+    }
+
+    /**
+     * 批量检查元素是否可能存在，一次往返
+     *
+     * @param items 待检查元素
+     * @return 与 items 一一对应的结果
+     */
+    @SuppressWarnings("unchecked")
+    public boolean[] containsAll(List<String> items) {
+        boolean[] found = new boolean[items.size()];
+        if (items.isEmpty()) {
+            return found;
+        }
+        List<Object> results;
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (String item : items) {
+                pipeline.bitfield(REDIS_KEY, bitfieldArgs(item, false));
+            }
+            results = pipeline.syncAndReturnAll();
+        }
+        for (int n = 0; n < found.length; n++) {
+            boolean all = true;
+            for (Long bit : (List<Long>) results.get(n)) {
+                if (bit == null || bit == 0L) {
+                    all = false;
+                    break;
+                }
+            }
+            found[n] = all;
+        }
+        return found;
+    }
+
+    /**
+     * 删除布隆过滤器（清空位图）
+     */
+    public void delete() {
+        jedis.del(REDIS_KEY);
+    }
+
+    /**
+     * 生成 BITFIELD 参数：SET u1 offset 1 ... 或 GET u1 offset ...，k 个比特都位于同一个块内
+     */
+    private String[] bitfieldArgs(String item, boolean set) {
+        String op = set ? "SET" : "GET";
+        String[] args = new String[HASH_COUNT * (set ? 4 : 3)];
+        long hash = HashUtils.hash64(item);
+        long blockBase = (hash & (BLOCK_COUNT - 1)) << BLOCK_SHIFT;
+        // 块内位置使用另一组独立的比特，每个位置 9 位，k=5 共 45 位
+        long inBlock = HashUtils.fmix64(hash ^ 0x9e3779b97f4a7c15L);
+        int p = 0;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long offset = blockBase + ((inBlock >>> (i * BLOCK_SHIFT)) & (BLOCK_BITS - 1));
+            args[p++] = op;
+            args[p++] = "u1";
+            args[p++] = String.valueOf(offset);
+            if (set) {
+                args[p++] = "1";
+            }
+        }
+        return args;
+    }
+
+    /**
+     * 标准布局的理论误判率 (1 - e^(-kn/m))^k
+     *
+     * @param n 插入数量
+     * @param m 位图大小
+     * @param k 哈希函数个数
+     */
+    public static double standardFpp(long n, long m, int k) {
+        return Math.pow(1 - Math.exp(-(double) k * n / m), k);
+    }
+
+    /**
+     * 分块布局的理论误判率：对块负载的泊松分布求期望
+     * sum_i Poisson(i; nB/m) * (1 - (1 - 1/B)^(k*i))^k
+     *
+     * @param n          插入数量
+     * @param m          位图大小
+     * @param k          哈希函数个数
+     * @param blockBits  块大小 B
+     */
+    public static double blockedFpp(long n, long m, int k, int blockBits) {
+        double lambda = (double) n * blockBits / m;
+        double logLambda = Math.log(lambda);
+        double logP = -lambda; // log Poisson(0)
+        double fpp = 0;
+        int upper = (int) (lambda + 20 * Math.sqrt(lambda + 1) + 20);
+        for (int i = 0; i <= upper; i++) {
+            if (i > 0) {
+                logP += logLambda - Math.log(i);
+            }
+            double blockFpp = Math.pow(1 - Math.pow(1 - 1.0 / blockBits, (double) k * i), k);
+            fpp += Math.exp(logP) * blockFpp;
+        }
+        return fpp;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("n, standard fpp, blocked fpp, ratio");
+        long[] sizes = {1_000_000L, 10_000_000L, 50_000_000L, 100_000_000L};
+        for (long n : sizes) {
+            double standard = standardFpp(n, BIT_SIZE, HASH_COUNT);
+            double blocked = blockedFpp(n, BIT_SIZE, HASH_COUNT, BLOCK_BITS);
+            System.out.printf("%d, %.3e, %.3e, %.2f%n", n, standard, blocked, blocked / standard);
+        }
+
+        Jedis jedis = new Jedis("localhost", 6379);
+        BlockedBloomFilter bloomFilter = new BlockedBloomFilter(jedis);
+        bloomFilter.add("apple");
+        System.out.println("Contains 'apple': " + bloomFilter.contains("apple")); // true
+        System.out.println("Contains 'pear': " + bloomFilter.contains("pear"));   // false (可能误判)
+        bloomFilter.delete();
+        jedis.close();
+    }
+}
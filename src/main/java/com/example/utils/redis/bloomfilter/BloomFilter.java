@@ -1,24 +1,40 @@
 package com.example.utils.redis.bloomfilter;
 
+import com.example.utils.HashUtils;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.List;
 
 public class BloomFilter {
 
     private static final String REDIS_KEY = "bloom_filter";
-    private static final int BIT_SIZE = 2 << 28; // 位图大小，约为2^29
-    private static final int HASH_COUNT = 5;    // 哈希函数个数
+    private static final int BIT_SIZE = 2 << 28; // 默认位图大小，约为2^29
+    private static final int HASH_COUNT = 5;    // 默认哈希函数个数
+    static final long MAX_BIT_SIZE = 1L << 32; // Redis 字符串最大 512MB
 
     private Jedis jedis;
+    private final String key;     // 位图对应的 Redis key
+    private final long bitSize;   // 位图大小 m
+    private final int hashCount;  // 哈希函数个数 k
 
     public BloomFilter(Jedis jedis) {
+        this(jedis, REDIS_KEY, BIT_SIZE, HASH_COUNT);
+    }
+
+    BloomFilter(Jedis jedis, String key, long bitSize, int hashCount) {
         this.jedis = jedis;
+        this.key = key;
+        this.bitSize = bitSize;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * 按预期插入量和目标误判率构建布隆过滤器
+     */
+    public static Builder builder(Jedis jedis) {
+        return new Builder(jedis);
     }
 
     /**
@@ -34,10 +50,7 @@ public class BloomFilter {
     public void addAll(List<String> items) {
         try (Pipeline pipeline = jedis.pipelined()) {
             for (String item : items) {
-                int[] hashIndexes = getHashIndexes(item);
-                for (int index : hashIndexes) {
-                    pipeline.setbit(REDIS_KEY, index, true);
-                }
+                appendAdd(pipeline, hash(item));
             }
             pipeline.sync();
         }
@@ -47,56 +60,126 @@ public class BloomFilter {
      * 检查元素是否可能存在于布隆过滤器中
      */
     public boolean contains(String item) {
-        int[] hashIndexes = getHashIndexes(item);
+        return containsAll(Collections.singletonList(item))[0];
+    }
+
+    /**
+     * 批量检查元素是否可能存在，所有元素的 GETBIT 在同一个 pipeline 中一次往返完成
+     *
+     * @param items 待检查元素
+     * @return 与 items 一一对应的结果
+     */
+    public boolean[] containsAll(List<String> items) {
+        boolean[] found = new boolean[items.size()];
+        if (items.isEmpty()) {
+            return found;
+        }
+        List<Object> results;
         try (Pipeline pipeline = jedis.pipelined()) {
-            for (int index : hashIndexes) {
-                pipeline.getbit(REDIS_KEY, index);
+            for (String item : items) {
+                appendContains(pipeline, hash(item));
             }
-            List<Object> results = pipeline.syncAndReturnAll();
-            for (Object result : results) {
-                if (!(Boolean) result) {
-                    return false;
-                }
+            results = pipeline.syncAndReturnAll();
+        }
+        for (int n = 0; n < found.length; n++) {
+            found[n] = allSet(results, n * hashCount);
+        }
+        return found;
+    }
+
+    /**
+     * 批量检查是否至少有一个元素可能存在，一次往返
+     */
+    public boolean mightContainAny(List<String> items) {
+        for (boolean found : containsAll(items)) {
+            if (found) {
+                return true;
             }
         }
-        return true;
+        return false;
     }
 
     /**
      * 删除布隆过滤器（清空位图）
      */
     public void delete() {
-        jedis.del(REDIS_KEY);
+        jedis.del(key);
     }
 
     /**
-     * 计算元素的多个哈希值并映射到位图中的索引
+     * 把一个元素的 k 个 SETBIT 追加到 pipeline
      */
-    private int[] getHashIndexes(String item) {
-        int[] indexes = new int[HASH_COUNT];
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(item.getBytes(StandardCharsets.UTF_8));
-            for (int i = 0; i < HASH_COUNT; i++) {
-                // 使用不同的哈希函数（通过改变种子）
-                int hash = hash(digest, i);
-                indexes[i] = Math.abs(hash % BIT_SIZE);
-            }
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("MD5 algorithm not found", e);
+    void appendAdd(Pipeline pipeline, long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            pipeline.setbit(key, bitIndex(hash, i), true);
         }
-        return indexes;
     }
 
     /**
-     * 哈希函数
+     * 把一个元素的 k 个 GETBIT 追加到 pipeline，结果用 allSet 解析
      */
-    private int hash(byte[] digest, int seed) {
-        int hash = 0;
-        for (int i = 0; i < 4; i++) {
-            hash = (hash << 8) | (digest[(seed + i) % digest.length] & 0xFF);
+    void appendContains(Pipeline pipeline, long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            pipeline.getbit(key, bitIndex(hash, i));
         }
-        return hash;
+    }
+
+    /**
+     * 解析 appendContains 的结果：从 from 开始的 k 个比特是否都为 1
+     */
+    boolean allSet(List<Object> results, int from) {
+        for (int i = 0; i < hashCount; i++) {
+            if (!(Boolean) results.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算元素的 64 位哈希（Murmur 风格，直接作用于 UTF-8 字节，无对象分配）
+     */
+    long hash(String item) {
+        return HashUtils.hash64(item);
+    }
+
+    /**
+     * 双重哈希：第 i 个哈希函数映射到位图中的索引
+     */
+    long bitIndex(long hash, int i) {
+        return HashUtils.index(hash, i, bitSize);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * 最优位图大小 m = -n * ln(p) / (ln2)^2
+     *
+     * @param expectedInsertions 预期插入量 n
+     * @param fpp                目标误判率 p
+     */
+    public static long optimalNumOfBits(long expectedInsertions, double fpp) {
+        return (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+    }
+
+    /**
+     * 最优哈希函数个数 k = m / n * ln2
+     *
+     * @param expectedInsertions 预期插入量 n
+     * @param numBits            位图大小 m
+     */
+    public static int optimalNumOfHashFunctions(long expectedInsertions, long numBits) {
+        return Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
     }
 
     /**
@@ -106,4 +189,74 @@ public class BloomFilter {
     public Jedis getJedis() {
         return jedis;
     }
-}
\ No newline at end of file
+
+    /**
+     * 布隆过滤器构建器，根据预期插入量和目标误判率计算最优的 m 和 k
+     */
+    public static class Builder {
+        private final Jedis jedis;
+        private String key = REDIS_KEY;
+        private long expectedInsertions = 10_000_000L; // 预期插入量
+        private double fpp = 0.001; // 目标误判率
+        private int growthFactor = 2; // 可扩容模式：每层容量增长倍数
+        private double tighteningRatio = 0.5; // 可扩容模式：每层误判率收紧比例
+
+        private Builder(Jedis jedis) {
+            this.jedis = jedis;
+        }
+
+        public Builder key(String key) {
+            this.key = key;
+            return this;
+        }
+
+        public Builder expectedInsertions(long expectedInsertions) {
+            if (expectedInsertions <= 0) {
+                throw new IllegalArgumentException("Expected insertions must be positive");
+            }
+            this.expectedInsertions = expectedInsertions;
+            return this;
+        }
+
+        public Builder falsePositiveProbability(double fpp) {
+            if (fpp <= 0 || fpp >= 1) {
+                throw new IllegalArgumentException("False positive probability must be in (0, 1)");
+            }
+            this.fpp = fpp;
+            return this;
+        }
+
+        public Builder growthFactor(int growthFactor) {
+            if (growthFactor < 1) {
+                throw new IllegalArgumentException("Growth factor must be at least 1");
+            }
+            this.growthFactor = growthFactor;
+            return this;
+        }
+
+        public Builder tighteningRatio(double tighteningRatio) {
+            if (tighteningRatio <= 0 || tighteningRatio >= 1) {
+                throw new IllegalArgumentException("Tightening ratio must be in (0, 1)");
+            }
+            this.tighteningRatio = tighteningRatio;
+            return this;
+        }
+
+        public BloomFilter build() {
+            long bitSize = optimalNumOfBits(expectedInsertions, fpp);
+            if (bitSize > MAX_BIT_SIZE) {
+                throw new IllegalArgumentException("Bloom filter needs " + bitSize
+                        + " bits, exceeding the 512MB Redis string limit; use ShardedBloomFilter.create to split it across keys");
+            }
+            int hashCount = optimalNumOfHashFunctions(expectedInsertions, bitSize);
+            return new BloomFilter(jedis, key, bitSize, hashCount);
+        }
+
+        /**
+         * 构建可扩容布隆过滤器，expectedInsertions 作为第一层容量，key 作为各层 key 的前缀
+         */
+        public ScalableBloomFilter buildScalable() {
+            return new ScalableBloomFilter(jedis, key, expectedInsertions, fpp, growthFactor, tighteningRatio);
+        }
+    }
+}
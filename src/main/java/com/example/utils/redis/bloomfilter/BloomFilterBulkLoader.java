@@ -0,0 +1,166 @@
+package com.example.utils.redis.bloomfilter;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 布隆过滤器批量预热
+ * 重启时逐个 addAll 重新加载千万级数据需要 元素数 * k 条 SETBIT，耗时长且压垮 Redis。
+ * 这里改为：
+ *  1. 在本地内存（可选堆外）中用过滤器自身的哈希函数构建完整位图；
+ *  2. 以 SETRANGE 分块写入暂存 key（全零块跳过）；
+ *  3. RENAME 暂存 key 覆盖线上 key，原子切换，读请求不会看到半成品。
+ * 本地位图按 Redis 的位序组织（offset 0 是第 0 个字节的最高位），可以直接上传。
+ *
+ * 注意：RENAME 会同步释放旧值，旧位图较大时建议在 Redis 中开启 lazyfree-lazy-server-del。
+ */
+public class BloomFilterBulkLoader {
+
+    private static final int CHUNK_SIZE = 1 << 20;    // 每次 SETRANGE 的字节数（1MB）
+    private static final int CHUNKS_PER_SYNC = 16;    // 每个 pipeline 批次的块数，限制客户端缓冲
+
+    private final BloomFilter bloomFilter;
+    private final boolean offHeap; // 是否使用堆外内存构建位图
+
+    public BloomFilterBulkLoader(BloomFilter bloomFilter) {
+        this(bloomFilter, false);
+    }
+
+    public BloomFilterBulkLoader(BloomFilter bloomFilter, boolean offHeap) {
+        this.bloomFilter = bloomFilter;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * 从迭代器加载并替换线上位图
+     *
+     * @param items 全量元素
+     * @return 加载的元素个数
+     */
+    public long load(Iterator<String> items) {
+        int byteSize = (int) ((bloomFilter.getBitSize() + 7) >>> 3);
+        ByteBuffer bitmap = offHeap ? ByteBuffer.allocateDirect(byteSize) : ByteBuffer.allocate(byteSize);
+        long count = fill(bitmap, items);
+        upload(bitmap);
+        return count;
+    }
+
+    /**
+     * 从流加载并替换线上位图
+     */
+    public long load(Stream<String> items) {
+        return load(items.iterator());
+    }
+
+    /**
+     * 从按行分隔的 UTF-8 文件加载并替换线上位图，每行一个元素
+     */
+    public long load(Path file) {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return load(lines);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+    }
+
+    /**
+     * 在本地位图中设置所有元素对应的比特
+     *
+     * @return 元素个数
+     */
+    private long fill(ByteBuffer bitmap, Iterator<String> items) {
+        int hashCount = bloomFilter.getHashCount();
+        long count = 0;
+        while (items.hasNext()) {
+            long hash = bloomFilter.hash(items.next());
+            for (int i = 0; i < hashCount; i++) {
+                long index = bloomFilter.bitIndex(hash, i);
+                int byteIndex = (int) (index >>> 3);
+                bitmap.put(byteIndex, (byte) (bitmap.get(byteIndex) | (0x80 >>> (index & 7))));
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 分块上传到暂存 key，再原子地 RENAME 到线上 key
+     */
+    private void upload(ByteBuffer bitmap) {
+        Jedis jedis = bloomFilter.getJedis();
+        String liveKey = bloomFilter.getKey();
+        byte[] stagingKey = (liveKey + ":staging").getBytes(StandardCharsets.UTF_8);
+        jedis.del(stagingKey);
+
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int capacity = bitmap.capacity();
+        boolean written = false;
+        Pipeline pipeline = jedis.pipelined();
+        try {
+            int pending = 0;
+            for (int offset = 0; offset < capacity; offset += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, capacity - offset);
+                ((Buffer) bitmap).position(offset);
+                bitmap.get(chunk, 0, length);
+                if (isZero(chunk, length)) {
+                    continue; // SETRANGE 会自动补零，全零块无需传输
+                }
+                // pipeline 在 sync 前持有数组引用，因此每块复制一份
+                pipeline.setrange(stagingKey, offset, Arrays.copyOf(chunk, length));
+                written = true;
+                if (++pending == CHUNKS_PER_SYNC) {
+                    pipeline.sync();
+                    pending = 0;
+                }
+            }
+            pipeline.sync();
+        } finally {
+            pipeline.close();
+        }
+        if (written) {
+            jedis.rename(stagingKey, liveKey.getBytes(StandardCharsets.UTF_8));
+        } else {
+            jedis.del(liveKey);
+        }
+    }
+
+    private static boolean isZero(byte[] data, int length) {
+        for (int i = 0; i < length; i++) {
+            if (data[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) {
+        Jedis jedis = new Jedis("localhost", 6379);
+        BloomFilter bloomFilter = BloomFilter.builder(jedis)
+                .key("bulk_bloom_filter")
+                .expectedInsertions(1_000_000)
+                .falsePositiveProbability(0.001)
+                .build();
+
+        long start = System.currentTimeMillis();
+        long count = new BloomFilterBulkLoader(bloomFilter, true)
+                .load(IntStream.range(0, 1_000_000).mapToObj(i -> "item-" + i));
+        System.out.println("Loaded " + count + " items in " + (System.currentTimeMillis() - start) + " ms");
+        System.out.println("Contains 'item-42': " + bloomFilter.contains("item-42")); // true
+        System.out.println("Contains 'pear': " + bloomFilter.contains("pear"));       // false (可能误判)
+
+        bloomFilter.delete();
+        jedis.close();
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.utils.redis.bloomfilter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class BloomFilterTest {
@@ -24,6 +25,14 @@ public class BloomFilterTest {
         System.out.println("Contains 'grape': " + bloomFilter.contains("grape")); // true
         System.out.println("Contains 'pear': " + bloomFilter.contains("pear"));   // false (可能误判)
 
+        // 批量检查（一次往返）
+        List<String> queries = new ArrayList<>();
+        queries.add("apple");
+        queries.add("pear");
+        queries.add("melon");
+        System.out.println("ContainsAll [apple, pear, melon]: " + Arrays.toString(bloomFilter.containsAll(queries))); // [true, false, true]
+        System.out.println("MightContainAny [apple, pear, melon]: " + bloomFilter.mightContainAny(queries)); // true
+
         // 删除布隆过滤器
         bloomFilter.delete();
         System.out.println("Contains 'apple' after deletion: " + bloomFilter.contains("apple")); // false
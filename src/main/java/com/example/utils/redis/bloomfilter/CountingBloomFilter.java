@@ -0,0 +1,311 @@
+package com.example.utils.redis.bloomfilter;
+
+import com.example.utils.HashUtils;
+import com.example.utils.redis.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 计数布隆过滤器，支持删除单个元素
+ * 每个位置是一个 4 位计数器，用 BITFIELD u4 打包存储在 Redis 字符串中（内存是普通布隆过滤器的 4 倍）：
+ *  - 添加：一条 BITFIELD OVERFLOW SAT INCRBY，计数器到 15 后饱和不再增加；
+ *  - 查询：一条 BITFIELD GET，所有计数器大于 0 即可能存在；
+ *  - 删除：一个 Lua 脚本，确认所有计数器大于 0（即 mightContain）后再逐个减一，饱和的计数器不再减少（无法知道真实计数）。
+ *    这只能跳过明显不存在的元素：一个从未添加、但恰好误判为存在的元素，它的计数器都属于其他元素，
+ *    删除它会把其他元素的计数器减到 0，造成假阴性。因此只应删除确实添加过的元素（如以数据库中的删除记录为准）。
+ * 批量操作与 BloomFilter.addAll 一样在一个 pipeline 中完成。
+ */
+public class CountingBloomFilter {
+
+    private static final String REDIS_KEY = "counting_bloom_filter";
+    private static final long COUNTER_COUNT = 1L << 26; // 计数器个数，共 32MB
+    private static final int HASH_COUNT = 5;            // 哈希函数个数
+    private static final int MAX_COUNT = 15;            // 4 位计数器的最大值
+    private static final int STATS_CHUNK_SIZE = 1 << 20; // 统计时每次 GETRANGE 的字节数
+
+    private static final LuaScript REMOVE_SCRIPT = new LuaScript(
+            "for i = 1, #ARGV do " +
+            "if redis.call('bitfield', KEYS[1], 'GET', 'u4', ARGV[i])[1] == 0 then return 0 end " +
+            "end " +
+            "for i = 1, #ARGV do " +
+            "local v = redis.call('bitfield', KEYS[1], 'GET', 'u4', ARGV[i])[1] " +
+            "if v > 0 and v < " + MAX_COUNT + " then " +
+            "redis.call('bitfield', KEYS[1], 'INCRBY', 'u4', ARGV[i], -1) " +
+            "end " +
+            "end " +
+            "return 1");
+
+    private final Jedis jedis;
+    private final String key;
+    private final long counterCount;
+    private final int hashCount;
+    private final AtomicLong saturatedIncrements = new AtomicLong(); // 添加后计数器处于饱和状态的次数
+    private boolean scriptLoaded;
+
+    public CountingBloomFilter(Jedis jedis) {
+        this(jedis, REDIS_KEY, COUNTER_COUNT, HASH_COUNT);
+    }
+
+    public CountingBloomFilter(Jedis jedis, String key, long counterCount, int hashCount) {
+        this.jedis = jedis;
+        this.key = key;
+        this.counterCount = counterCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * 添加单个元素
+     */
+    public void add(String item) {
+        addAll(Collections.singletonList(item));
+    }
+
+    /**
+     * 批量添加元素，每个元素一条 BITFIELD INCRBY
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(List<String> items) {
+        List<Object> results;
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (String item : items) {
+                pipeline.bitfield(key, incrementArgs(item));
+            }
+            results = pipeline.syncAndReturnAll();
+        }
+        long saturated = 0;
+        for (Object result : results) {
+            for (Long value : (List<Long>) result) {
+                if (value != null && value == MAX_COUNT) {
+                    saturated++;
+                }
+            }
+        }
+        if (saturated > 0) {
+            saturatedIncrements.addAndGet(saturated);
+        }
+    }
+
+    /**
+     * 检查元素是否可能存在
+     */
+    public boolean contains(String item) {
+        return containsAll(Collections.singletonList(item))[0];
+    }
+
+    /**
+     * 批量检查元素是否可能存在，一次往返
+     */
+    @SuppressWarnings("unchecked")
+    public boolean[] containsAll(List<String> items) {
+        boolean[] found = new boolean[items.size()];
+        if (items.isEmpty()) {
+            return found;
+        }
+        List<Object> results;
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (String item : items) {
+                pipeline.bitfield(key, getArgs(item));
+            }
+            results = pipeline.syncAndReturnAll();
+        }
+        for (int n = 0; n < found.length; n++) {
+            boolean all = true;
+            for (Long value : (List<Long>) results.get(n)) {
+                if (value == null || value == 0L) {
+                    all = false;
+                    break;
+                }
+            }
+            found[n] = all;
+        }
+        return found;
+    }
+
+    /**
+     * 删除单个元素
+     *
+     * @return 元素是否可能存在并已删除
+     */
+    public boolean remove(String item) {
+        return removeAll(Collections.singletonList(item)) == 1;
+    }
+
+    /**
+     * 批量删除元素，每个元素一次 EVALSHA，整体一个 pipeline
+     * 不存在的元素（某个计数器为 0）会被跳过；误判为存在的元素仍会被删除，并可能让其他元素出现假阴性，
+     * 调用方应只删除确实添加过的元素
+     *
+     * @return 实际删除的元素个数
+     */
+    public int removeAll(List<String> items) {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        if (!scriptLoaded) {
+            REMOVE_SCRIPT.load(jedis);
+            scriptLoaded = true;
+        }
+        List<String> keys = Collections.singletonList(key);
+        List<List<String>> argsList = new ArrayList<>(items.size());
+        List<Object> results;
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (String item : items) {
+                List<String> args = Arrays.asList(offsets(item));
+                argsList.add(args);
+                REMOVE_SCRIPT.evalsha(pipeline, keys, args);
+            }
+            results = pipeline.syncAndReturnAll();
+        }
+        int removed = 0;
+        for (int n = 0; n < results.size(); n++) {
+            Object result = results.get(n);
+            if (LuaScript.isNoScript(result)) {
+                // 脚本缓存被清空，单独用 EVAL 重试
+                result = REMOVE_SCRIPT.eval(jedis, keys, argsList.get(n));
+            }
+            if (Long.valueOf(1).equals(result)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 删除整个过滤器
+     */
+    public void delete() {
+        jedis.del(key);
+        saturatedIncrements.set(0);
+    }
+
+    /**
+     * 扫描全部计数器，统计非零与饱和计数器个数（按 1MB 分块 GETRANGE，开销较大，适合定时巡检）
+     */
+    public CounterStats stats() {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        long byteSize = (counterCount + 1) / 2;
+        long nonZero = 0;
+        long saturated = 0;
+        for (long start = 0; start < byteSize; start += STATS_CHUNK_SIZE) {
+            long end = Math.min(start + STATS_CHUNK_SIZE, byteSize) - 1;
+            byte[] data = jedis.getrange(rawKey, start, end);
+            for (byte b : data) {
+                int high = (b >>> 4) & 0xF;
+                int low = b & 0xF;
+                nonZero += (high != 0 ? 1 : 0) + (low != 0 ? 1 : 0);
+                saturated += (high == MAX_COUNT ? 1 : 0) + (low == MAX_COUNT ? 1 : 0);
+            }
+        }
+        return new CounterStats(counterCount, nonZero, saturated, saturatedIncrements.get());
+    }
+
+    private String[] offsets(String item) {
+        long hash = HashUtils.hash64(item);
+        String[] offsets = new String[hashCount];
+        for (int i = 0; i < hashCount; i++) {
+            // "#n" 表示第 n 个 u4 计数器
+            offsets[i] = "#" + HashUtils.index(hash, i, counterCount);
+        }
+        return offsets;
+    }
+
+    private String[] incrementArgs(String item) {
+        String[] offsets = offsets(item);
+        String[] args = new String[2 + offsets.length * 4];
+        args[0] = "OVERFLOW";
+        args[1] = "SAT";
+        int p = 2;
+        for (String offset : offsets) {
+            args[p++] = "INCRBY";
+            args[p++] = "u4";
+            args[p++] = offset;
+            args[p++] = "1";
+        }
+        return args;
+    }
+
+    private String[] getArgs(String item) {
+        String[] offsets = offsets(item);
+        String[] args = new String[offsets.length * 3];
+        int p = 0;
+        for (String offset : offsets) {
+            args[p++] = "GET";
+            args[p++] = "u4";
+            args[p++] = offset;
+        }
+        return args;
+    }
+
+    /**
+     * 计数器统计
+     */
+    public static class CounterStats {
+        private final long counterCount;        // 计数器总数
+        private final long nonZeroCount;        // 非零计数器个数
+        private final long saturatedCount;      // 已饱和（值为 15）的计数器个数
+        private final long saturatedIncrements; // 本实例添加后计数器处于饱和状态的次数
+
+        public CounterStats(long counterCount, long nonZeroCount, long saturatedCount, long saturatedIncrements) {
+            this.counterCount = counterCount;
+            this.nonZeroCount = nonZeroCount;
+            this.saturatedCount = saturatedCount;
+            this.saturatedIncrements = saturatedIncrements;
+        }
+
+        public long getCounterCount() {
+            return counterCount;
+        }
+
+        public long getNonZeroCount() {
+            return nonZeroCount;
+        }
+
+        public long getSaturatedCount() {
+            return saturatedCount;
+        }
+
+        public long getSaturatedIncrements() {
+            return saturatedIncrements;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "CounterStats{counterCount=%d, nonZeroCount=%d, saturatedCount=%d, saturatedIncrements=%d}",
+                    counterCount, nonZeroCount, saturatedCount, saturatedIncrements
+            );
+        }
+    }
+
+    public static void main(String[] args) {
+        Jedis jedis = new Jedis("localhost", 6379);
+        CountingBloomFilter bloomFilter = new CountingBloomFilter(jedis, REDIS_KEY, 1 << 20, HASH_COUNT);
+
+        bloomFilter.addAll(Arrays.asList("doc-1", "doc-2", "doc-3"));
+        System.out.println("Contains 'doc-2': " + bloomFilter.contains("doc-2")); // true
+
+        // 删除单个元素
+        System.out.println("Remove 'doc-2': " + bloomFilter.remove("doc-2"));     // true
+        System.out.println("Contains 'doc-2' after remove: " + bloomFilter.contains("doc-2")); // false
+        System.out.println("Contains 'doc-1' after remove: " + bloomFilter.contains("doc-1")); // true
+
+        // 批量删除，不存在的元素会被跳过
+        System.out.println("RemoveAll [doc-1, doc-3, pear]: " + bloomFilter.removeAll(Arrays.asList("doc-1", "doc-3", "pear"))); // 2
+
+        // 同一元素重复添加 20 次，计数器饱和
+        for (int i = 0; i < 20; i++) {
+            bloomFilter.add("hot-doc");
+        }
+        System.out.println(bloomFilter.stats());
+
+        bloomFilter.delete();
+        jedis.close();
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.utils.redis.bloomfilter;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带本地近缓存的布隆过滤器
+ * 布隆过滤器读远多于写，每次 contains 都访问 Redis 不划算。这里在 JVM 堆外保存一份位图快照，contains 直接本地判断：
+ *  - 写入同时更新本地快照和 Redis，并通过 Lua 脚本原子地递增版本号 {key}:version、
+ *    在有序集合 {key}:dirty 中以新版本号为分数记录被修改的区域（每个区域 64KB）；
+ *  - 快照超过允许的陈旧时间后，读取版本号，只用 GETRANGE 拉取本地版本之后被修改过的区域；
+ *  - 版本号回退（key 被删除）或出现全量失效标记时重新拉取整个位图。
+ * 所有写入都需要经过本类（或在外部修改后调用 invalidateAll），否则其他进程的快照感知不到变化。
+ */
+public class NearCacheBloomFilter {
+
+    private static final int REGION_SIZE = 1 << 16; // 区域大小（字节）
+    private static final String ALL_REGIONS = "*";  // 全量失效标记
+
+    private static final String MARK_DIRTY_SCRIPT =
+            "local v = redis.call('incr', KEYS[1]) " +
+            "for i = 1, #ARGV do " +
+            "redis.call('zadd', KEYS[2], v, ARGV[i]) " +
+            "end " +
+            "return v";
+
+    private final BloomFilter bloomFilter;
+    private final Jedis jedis;
+    private final byte[] bitmapKey;
+    private final String versionKey;
+    private final String dirtyKey;
+    private final long maxStalenessNanos; // 允许的最大陈旧时间
+    private final ByteBuffer snapshot;    // 堆外位图快照，布局与 Redis 一致
+    private long localVersion = -1;       // 快照对应的版本号，-1 表示尚未加载
+    private volatile long lastRefreshNanos;
+
+    /**
+     * @param bloomFilter       底层 Redis 布隆过滤器
+     * @param maxStaleness      允许的最大陈旧时间
+     * @param unit              时间单位
+     */
+    public NearCacheBloomFilter(BloomFilter bloomFilter, long maxStaleness, TimeUnit unit) {
+        this.bloomFilter = bloomFilter;
+        this.jedis = bloomFilter.getJedis();
+        this.bitmapKey = bloomFilter.getKey().getBytes(StandardCharsets.UTF_8);
+        this.versionKey = bloomFilter.getKey() + ":version";
+        this.dirtyKey = bloomFilter.getKey() + ":dirty";
+        this.maxStalenessNanos = unit.toNanos(maxStaleness);
+        this.snapshot = ByteBuffer.allocateDirect((int) ((bloomFilter.getBitSize() + 7) >>> 3));
+        refresh();
+    }
+
+    /**
+     * 添加单个元素
+     */
+    public void add(String item) {
+        addAll(Collections.singletonList(item));
+    }
+
+    /**
+     * 批量添加：写 Redis、标记脏区域在同一个 pipeline 中完成，同时更新本地快照
+     */
+    public synchronized void addAll(List<String> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        int hashCount = bloomFilter.getHashCount();
+        TreeSet<Integer> regions = new TreeSet<>();
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (String item : items) {
+                long hash = bloomFilter.hash(item);
+                bloomFilter.appendAdd(pipeline, hash);
+                for (int i = 0; i < hashCount; i++) {
+                    long index = bloomFilter.bitIndex(hash, i);
+                    setLocalBit(index);
+                    regions.add((int) ((index >>> 3) / REGION_SIZE));
+                }
+            }
+            List<String> args = new ArrayList<>(regions.size());
+            for (Integer region : regions) {
+                args.add(String.valueOf(region));
+            }
+            pipeline.eval(MARK_DIRTY_SCRIPT, Arrays.asList(versionKey, dirtyKey), args);
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * 检查元素是否可能存在，快照未过期时不访问 Redis
+     */
+    public boolean contains(String item) {
+        refreshIfStale();
+        return containsLocally(bloomFilter.hash(item));
+    }
+
+    /**
+     * 批量检查元素是否可能存在
+     */
+    public boolean[] containsAll(List<String> items) {
+        refreshIfStale();
+        boolean[] found = new boolean[items.size()];
+        for (int n = 0; n < found.length; n++) {
+            found[n] = containsLocally(bloomFilter.hash(items.get(n)));
+        }
+        return found;
+    }
+
+    /**
+     * 删除布隆过滤器，并通知所有快照全量失效
+     */
+    public synchronized void delete() {
+        bloomFilter.delete();
+        invalidateAll();
+    }
+
+    /**
+     * 在绕过本类修改位图后（如 BloomFilterBulkLoader 重建）调用，通知所有快照全量重新加载
+     */
+    public synchronized void invalidateAll() {
+        jedis.eval(MARK_DIRTY_SCRIPT, Arrays.asList(versionKey, dirtyKey), Collections.singletonList(ALL_REGIONS));
+        refresh();
+    }
+
+    /**
+     * 按脏区域增量刷新本地快照
+     */
+    public synchronized void refresh() {
+        String version = jedis.get(versionKey);
+        long remoteVersion = version == null ? 0 : Long.parseLong(version);
+        if (remoteVersion != localVersion) {
+            if (localVersion < 0 || remoteVersion < localVersion) {
+                loadRegions(null);
+            } else {
+                List<String> dirty = jedis.zrangeByScore(dirtyKey, "(" + localVersion, "+inf");
+                loadRegions(dirty.contains(ALL_REGIONS) ? null : dirty);
+            }
+            localVersion = remoteVersion;
+        }
+        lastRefreshNanos = System.nanoTime();
+    }
+
+    private void refreshIfStale() {
+        if (System.nanoTime() - lastRefreshNanos > maxStalenessNanos) {
+            synchronized (this) {
+                if (System.nanoTime() - lastRefreshNanos > maxStalenessNanos) {
+                    refresh();
+                }
+            }
+        }
+    }
+
+    /**
+     * 用 GETRANGE 拉取指定区域，regions 为 null 时拉取全部区域
+     */
+    private void loadRegions(List<String> regions) {
+        int regionCount = (snapshot.capacity() + REGION_SIZE - 1) / REGION_SIZE;
+        List<Integer> targets = new ArrayList<>();
+        if (regions == null) {
+            for (int r = 0; r < regionCount; r++) {
+                targets.add(r);
+            }
+        } else {
+            for (String region : regions) {
+                targets.add(Integer.valueOf(region));
+            }
+        }
+        List<Object> results;
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (Integer region : targets) {
+                long start = (long) region * REGION_SIZE;
+                long end = Math.min(start + REGION_SIZE, snapshot.capacity()) - 1;
+                pipeline.getrange(bitmapKey, start, end);
+            }
+            results = pipeline.syncAndReturnAll();
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            int start = targets.get(i) * REGION_SIZE;
+            int length = Math.min(REGION_SIZE, snapshot.capacity() - start);
+            byte[] data = (byte[]) results.get(i);
+            ByteBuffer region = snapshot.duplicate();
+            ((Buffer) region).position(start);
+            // key 比位图短时 GETRANGE 返回的数据不足，剩余部分补零
+            region.put(data, 0, Math.min(data.length, length));
+            for (int j = data.length; j < length; j++) {
+                region.put((byte) 0);
+            }
+        }
+    }
+
+    private boolean containsLocally(long hash) {
+        for (int i = 0; i < bloomFilter.getHashCount(); i++) {
+            long index = bloomFilter.bitIndex(hash, i);
+            if ((snapshot.get((int) (index >>> 3)) & (0x80 >>> (index & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setLocalBit(long index) {
+        int byteIndex = (int) (index >>> 3);
+        snapshot.put(byteIndex, (byte) (snapshot.get(byteIndex) | (0x80 >>> (index & 7))));
+    }
+
+    public static void main(String[] args) {
+        Jedis writerJedis = new Jedis("localhost", 6379);
+        Jedis readerJedis = new Jedis("localhost", 6379);
+        BloomFilter writerFilter = BloomFilter.builder(writerJedis).key("near_cache_bloom_filter")
+                .expectedInsertions(1_000_000).falsePositiveProbability(0.001).build();
+        BloomFilter readerFilter = BloomFilter.builder(readerJedis).key("near_cache_bloom_filter")
+                .expectedInsertions(1_000_000).falsePositiveProbability(0.001).build();
+
+        NearCacheBloomFilter writer = new NearCacheBloomFilter(writerFilter, 1, TimeUnit.SECONDS);
+        NearCacheBloomFilter reader = new NearCacheBloomFilter(readerFilter, 1, TimeUnit.SECONDS);
+        writer.add("apple");
+        System.out.println("Writer contains 'apple': " + writer.contains("apple")); // true
+        System.out.println("Reader contains 'apple' before refresh: " + reader.contains("apple")); // false，快照尚未过期
+        reader.refresh();
+        System.out.println("Reader contains 'apple' after refresh: " + reader.contains("apple"));  // true
+
+        writer.delete();
+        writerJedis.del("near_cache_bloom_filter:version", "near_cache_bloom_filter:dirty");
+        writerJedis.close();
+        readerJedis.close();
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.utils.redis.bloomfilter;
+
+import com.example.utils.redis.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 可扩容布隆过滤器（Scalable Bloom Filter）
+ * 由多层布隆过滤器组成，新元素只写入最新一层；当最新一层的插入量达到容量时追加一层更大、更严格的过滤器
+ * （批量写入按剩余容量拆分，每层的插入量不会超过容量）：
+ *  - 第 i 层容量 = 初始容量 * growth^i
+ *  - 第 i 层误判率 = fpp * (1 - r) * r^i，各层误判率之和不超过 fpp
+ * 这样数据量超出预期时无需整体重建，整体误判率依然可控。
+ *
+ * 层数保存在 Redis 的 {name}:layers 中，多个进程共享；查询时所有层的 GETBIT 与层数读取放在同一个
+ * pipeline 中，按从新到旧的顺序判断，发现本地层数落后时刷新后重查一次。
+ */
+public class ScalableBloomFilter {
+
+    /**
+     * 在第 ARGV[1] 层预留最多 ARGV[2] 个插入名额（不超过该层剩余容量 ARGV[3] - 已插入数），该层写满时追加一层
+     * 返回 {层数, 预留数}；本地层数落后（其他进程已扩容）时不预留
+     */
+    private static final LuaScript RESERVE_SCRIPT = new LuaScript(
+            "local n = tonumber(redis.call('get', KEYS[1]) or '1') " +
+            "if n ~= tonumber(ARGV[1]) + 1 then " +
+            "return {n, 0} " +
+            "end " +
+            "local capacity = tonumber(ARGV[3]) " +
+            "local inserted = tonumber(redis.call('get', KEYS[2]) or '0') " +
+            "local granted = math.min(tonumber(ARGV[2]), capacity - inserted) " +
+            "if granted > 0 then " +
+            "redis.call('incrby', KEYS[2], granted) " +
+            "inserted = inserted + granted " +
+            "else " +
+            "granted = 0 " +
+            "end " +
+            "if inserted >= capacity then " +
+            "n = n + 1 " +
+            "redis.call('set', KEYS[1], n) " +
+            "end " +
+            "return {n, granted}");
+
+    private final Jedis jedis;
+    private final String name;
+    private final long initialCapacity;  // 第一层预期插入量
+    private final double fpp;            // 整体目标误判率
+    private final int growthFactor;      // 每层容量增长倍数
+    private final double tighteningRatio; // 每层误判率收紧比例 r
+    private final List<BloomFilter> layers = new ArrayList<>(); // 下标即层号，越靠后越新
+
+    ScalableBloomFilter(Jedis jedis, String name, long initialCapacity, double fpp,
+                        int growthFactor, double tighteningRatio) {
+        this.jedis = jedis;
+        this.name = name;
+        this.initialCapacity = initialCapacity;
+        this.fpp = fpp;
+        this.growthFactor = growthFactor;
+        this.tighteningRatio = tighteningRatio;
+        String layerCount = jedis.get(layerCountKey());
+        ensureLayers(layerCount == null ? 1 : Integer.parseInt(layerCount));
+    }
+
+    /**
+     * 添加单个元素
+     */
+    public void add(String item) {
+        addAll(Collections.singletonList(item));
+    }
+
+    /**
+     * 批量添加元素：先在最新一层预留不超过其剩余容量的名额，写入这部分元素，
+     * 该层写满时追加新层，剩余元素继续写入新层，任何一层的插入量都不会超过容量
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(List<String> items) {
+        int from = 0;
+        while (from < items.size()) {
+            int current = layers.size() - 1;
+            List<Long> reserved = (List<Long>) RESERVE_SCRIPT.eval(jedis,
+                    Arrays.asList(layerCountKey(), insertedCountKey(current)),
+                    Arrays.asList(String.valueOf(current), String.valueOf(items.size() - from),
+                            String.valueOf(layerCapacity(current))));
+            int granted = reserved.get(1).intValue();
+            if (granted > 0) {
+                BloomFilter layer = layers.get(current);
+                try (Pipeline pipeline = jedis.pipelined()) {
+                    for (String item : items.subList(from, from + granted)) {
+                        layer.appendAdd(pipeline, layer.hash(item));
+                    }
+                    pipeline.sync();
+                }
+                from += granted;
+            }
+            ensureLayers(reserved.get(0).intValue());
+        }
+    }
+
+    /**
+     * 检查元素是否可能存在于布隆过滤器中
+     */
+    public boolean contains(String item) {
+        return containsAll(Collections.singletonList(item))[0];
+    }
+
+    /**
+     * 批量检查元素是否可能存在，所有层的查询在同一个 pipeline 中一次往返
+     */
+    public boolean[] containsAll(List<String> items) {
+        boolean[] found = new boolean[items.size()];
+        if (items.isEmpty()) {
+            return found;
+        }
+        List<Object> results;
+        try (Pipeline pipeline = jedis.pipelined()) {
+            pipeline.get(layerCountKey());
+            for (String item : items) {
+                long hash = layers.get(0).hash(item);
+                for (int l = layers.size() - 1; l >= 0; l--) {
+                    layers.get(l).appendContains(pipeline, hash);
+                }
+            }
+            results = pipeline.syncAndReturnAll();
+        }
+        if (refreshLayers(results.get(0))) {
+            return containsAll(items);
+        }
+        int offset = 1;
+        for (int n = 0; n < found.length; n++) {
+            for (int l = layers.size() - 1; l >= 0; l--) {
+                BloomFilter layer = layers.get(l);
+                if (!found[n] && layer.allSet(results, offset)) {
+                    found[n] = true;
+                }
+                offset += layer.getHashCount();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 删除所有层
+     */
+    public void delete() {
+        List<String> keys = new ArrayList<>();
+        keys.add(layerCountKey());
+        for (int i = 0; i < layers.size(); i++) {
+            keys.add(layers.get(i).getKey());
+            keys.add(insertedCountKey(i));
+        }
+        jedis.del(keys.toArray(new String[0]));
+        layers.subList(1, layers.size()).clear();
+    }
+
+    public int getLayerCount() {
+        return layers.size();
+    }
+
+    /**
+     * 根据 Redis 中的层数刷新本地层列表
+     *
+     * @return 本地层数是否落后
+     */
+    private boolean refreshLayers(Object remoteLayerCount) {
+        int remote = remoteLayerCount == null ? 1 : Integer.parseInt((String) remoteLayerCount);
+        if (remote > layers.size()) {
+            ensureLayers(remote);
+            return true;
+        }
+        return false;
+    }
+
+    private void ensureLayers(int count) {
+        while (layers.size() < count) {
+            int i = layers.size();
+            long capacity = layerCapacity(i);
+            double layerFpp = fpp * (1 - tighteningRatio) * Math.pow(tighteningRatio, i);
+            long bitSize = BloomFilter.optimalNumOfBits(capacity, layerFpp);
+            int hashCount = BloomFilter.optimalNumOfHashFunctions(capacity, bitSize);
+            layers.add(new BloomFilter(jedis, name + ":layer:" + i, bitSize, hashCount));
+        }
+    }
+
+    private long layerCapacity(int layer) {
+        return initialCapacity * (long) Math.pow(growthFactor, layer);
+    }
+
+    private String layerCountKey() {
+        return name + ":layers";
+    }
+
+    private String insertedCountKey(int layer) {
+        return name + ":layer:" + layer + ":count";
+    }
+
+    public static void main(String[] args) {
+        Jedis jedis = new Jedis("localhost", 6379);
+        ScalableBloomFilter bloomFilter = BloomFilter.builder(jedis)
+                .key("scalable_bloom_filter")
+                .expectedInsertions(1000)
+                .falsePositiveProbability(0.01)
+                .buildScalable();
+
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            items.add("item-" + i);
+        }
+        bloomFilter.addAll(items.subList(0, 2000));
+        bloomFilter.addAll(items.subList(2000, 5000));
+        System.out.println("Layer count: " + bloomFilter.getLayerCount()); // 3
+        System.out.println("Contains 'item-10': " + bloomFilter.contains("item-10"));     // true
+        System.out.println("Contains 'item-4999': " + bloomFilter.contains("item-4999")); // true
+        System.out.println("Contains 'pear': " + bloomFilter.contains("pear"));           // false (可能误判)
+
+        bloomFilter.delete();
+        jedis.close();
+    }
+}
@@ -0,0 +1,430 @@
+package com.example.utils.redis.bloomfilter;
+
+import com.example.utils.HashUtils;
+import redis.clients.jedis.ClusterPipeline;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.commands.PipelineCommands;
+import redis.clients.jedis.providers.ClusterConnectionProvider;
+import redis.clients.jedis.util.Pool;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 分片布隆过滤器
+ * 把单个 64MB 的大 key 拆成 N 个子 key，每个元素的全部比特只落在一个分片内：
+ *  - 单机使用 JedisPooled，集群使用 ClusterConnectionProvider；
+ *  - 子 key 名形如 bloom_filter:{bloom_filter:3}，hash tag 按分片区分，集群下不同分片分散到不同 slot / 节点，
+ *    同一分片的新旧两代 key 落在同一 slot；
+ *  - 一批元素按分片分组，每个涉及的分片一条 BITFIELD，全部放在一个 pipeline 中发送：
+ *    单机是一个连接上的一次往返，集群由 ClusterPipeline 按节点分组，每个节点一个 pipeline；
+ *  - 轮换：beginRotation 切换到一组新的空分片，写入只进入新一代，查询同时检查新旧两代，任一代命中即可能存在；
+ *    调用方重新写入需要保留的数据后 finishRotation 逐个删除旧一代的分片。
+ * 当前代数保存在 Redis 的 {name}:generation 中，每次读写在分片命令之后读取一次当前代数（单机追加在同一个 pipeline 末尾），
+ * 与本地缓存的不一致时重新加载并重做：写入改写到新一代，查询对未命中的元素重查。因此任一进程开始轮换后，
+ * 所有实例的写入都会进入新一代，轮换期间和结束后都不会因为其他实例的代数过期而出现假阴性。
+ * 注意：字符串值的内存即使用 UNLINK 也是同步释放的（lazyfree 只对多元素的集合类型生效），
+ * 删除一个分片阻塞的时间与分片大小成正比；分片的意义在于把一次 64MB 的释放拆成 N 次较小的释放，中间可以停顿。
+ */
+public class ShardedBloomFilter {
+
+    private static final String DEFAULT_NAME = "bloom_filter";
+    private static final long BIT_SIZE = 2L << 28; // 总位图大小，约为2^29
+    private static final int HASH_COUNT = 5;      // 哈希函数个数
+
+    private static final String BEGIN_ROTATION_SCRIPT =
+            "if redis.call('hexists', KEYS[1], 'previous') == 1 then " +
+            "return -1 " +
+            "end " +
+            "local current = tonumber(redis.call('hget', KEYS[1], 'current') or '0') " +
+            "redis.call('hset', KEYS[1], 'previous', current, 'current', current + 1) " +
+            "return current + 1";
+
+    private final UnifiedJedis jedis;                 // 非 pipeline 命令
+    private final Pool<Connection> pool;              // 单机 pipeline 的连接池，集群时为 null
+    private final ClusterConnectionProvider cluster;  // 集群 pipeline 的连接，单机时为 null
+    private final String name;
+    private final int shardCount;
+    private final long shardBitSize;  // 单个分片的位图大小
+    private final int hashCount;
+    private volatile Generation generation;
+
+    public ShardedBloomFilter(JedisPooled jedis, int shardCount) {
+        this(jedis, DEFAULT_NAME, shardCount);
+    }
+
+    /**
+     * @param jedis      单机 Redis 客户端
+     * @param name       过滤器名称，作为子 key 的前缀
+     * @param shardCount 分片数量
+     */
+    public ShardedBloomFilter(JedisPooled jedis, String name, int shardCount) {
+        this(jedis, jedis.getPool(), null, name, shardCount, BIT_SIZE / shardCount, HASH_COUNT);
+    }
+
+    /**
+     * @param cluster    Redis 集群的连接，由调用方创建和关闭，可与其他客户端共用
+     * @param name       过滤器名称，作为子 key 的前缀
+     * @param shardCount 分片数量
+     */
+    public ShardedBloomFilter(ClusterConnectionProvider cluster, String name, int shardCount) {
+        this(clusterClient(cluster), null, cluster, name, shardCount, BIT_SIZE / shardCount, HASH_COUNT);
+    }
+
+    /**
+     * 按预期插入量和目标误判率创建，计算出的位图平均分到各分片
+     * 元素按哈希均匀分布到分片，每个分片承担约 1/N 的元素和 1/N 的比特，误判率与不分片时相同
+     *
+     * @param expectedInsertions 预期插入量
+     * @param fpp                目标误判率
+     */
+    public static ShardedBloomFilter create(JedisPooled jedis, String name, int shardCount,
+                                            long expectedInsertions, double fpp) {
+        return create(jedis, jedis.getPool(), null, name, shardCount, expectedInsertions, fpp);
+    }
+
+    /**
+     * 集群版本的 {@link #create(JedisPooled, String, int, long, double)}
+     */
+    public static ShardedBloomFilter create(ClusterConnectionProvider cluster, String name, int shardCount,
+                                            long expectedInsertions, double fpp) {
+        return create(clusterClient(cluster), null, cluster, name, shardCount, expectedInsertions, fpp);
+    }
+
+    private static ShardedBloomFilter create(UnifiedJedis jedis, Pool<Connection> pool, ClusterConnectionProvider cluster,
+                                             String name, int shardCount, long expectedInsertions, double fpp) {
+        if (shardCount <= 0 || expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Shard count and expected insertions must be positive, fpp in (0, 1)");
+        }
+        long bitSize = BloomFilter.optimalNumOfBits(expectedInsertions, fpp);
+        long shardBitSize = (bitSize + shardCount - 1) / shardCount;
+        if (shardBitSize > BloomFilter.MAX_BIT_SIZE) {
+            throw new IllegalArgumentException("Each shard needs " + shardBitSize
+                    + " bits, exceeding the 512MB Redis string limit; use more shards");
+        }
+        int hashCount = BloomFilter.optimalNumOfHashFunctions(expectedInsertions, bitSize);
+        return new ShardedBloomFilter(jedis, pool, cluster, name, shardCount, shardBitSize, hashCount);
+    }
+
+    private ShardedBloomFilter(UnifiedJedis jedis, Pool<Connection> pool, ClusterConnectionProvider cluster,
+                               String name, int shardCount, long shardBitSize, int hashCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.jedis = jedis;
+        this.pool = pool;
+        this.cluster = cluster;
+        this.name = name;
+        this.shardCount = shardCount;
+        this.shardBitSize = shardBitSize;
+        this.hashCount = hashCount;
+        refresh();
+    }
+
+    /**
+     * 添加单个元素到布隆过滤器
+     */
+    public void add(String item) {
+        addAll(Collections.singletonList(item));
+    }
+
+    /**
+     * 批量添加元素到布隆过滤器（当前一代），所有分片的 BITFIELD 在一个 pipeline 中发送
+     * 写入后发现代数已经变化（其他实例开始了轮换）时改写到新一代
+     */
+    public void addAll(List<String> items) {
+        Map<Integer, List<String>> argsByShard = new HashMap<>();
+        for (String item : items) {
+            long hash = HashUtils.hash64(item);
+            List<String> args = argsByShard.computeIfAbsent(shard(hash), s -> new ArrayList<>());
+            for (int i = 0; i < hashCount; i++) {
+                args.add("SET");
+                args.add("u1");
+                args.add(String.valueOf(HashUtils.index(hash, i, shardBitSize)));
+                args.add("1");
+            }
+        }
+        if (argsByShard.isEmpty()) {
+            return;
+        }
+        Map<Integer, String[]> commands = new HashMap<>();
+        argsByShard.forEach((shard, args) -> commands.put(shard, args.toArray(new String[0])));
+
+        Generation view = generation;
+        while (true) {
+            String[] keys = view.currentKeys;
+            long current = pipelined(pipeline -> commands.forEach((shard, args) -> pipeline.bitfield(keys[shard], args)));
+            if (current == view.current) {
+                return;
+            }
+            refresh();
+            Generation latest = generation;
+            if (latest.current != view.current && latest.previous != view.current) {
+                // 写入了已经删除的一代，BITFIELD 重新创建了这些分片，删除它们
+                for (Integer shard : commands.keySet()) {
+                    jedis.unlink(keys[shard]);
+                }
+            }
+            view = latest;
+        }
+    }
+
+    /**
+     * 检查元素是否可能存在于布隆过滤器中
+     */
+    public boolean contains(String item) {
+        return containsAll(Collections.singletonList(item))[0];
+    }
+
+    /**
+     * 批量检查元素是否可能存在，所有分片的 BITFIELD 在一个 pipeline 中发送，轮换期间同时查询新旧两代
+     * 查询后发现代数已经变化时，用新的代数重查未命中的元素
+     */
+    public boolean[] containsAll(List<String> items) {
+        boolean[] found = new boolean[items.size()];
+        if (items.isEmpty()) {
+            return found;
+        }
+        long[] hashes = new long[items.size()];
+        for (int n = 0; n < hashes.length; n++) {
+            hashes[n] = HashUtils.hash64(items.get(n));
+        }
+        Generation view = generation;
+        while (test(view, hashes, found) != view.current) {
+            refresh();
+            view = generation;
+        }
+        return found;
+    }
+
+    /**
+     * 开始轮换：之后的写入进入一组新的空分片，旧一代保留到 finishRotation
+     *
+     * @throws IllegalStateException 上一次轮换还没有结束
+     */
+    public void beginRotation() {
+        Object result = jedis.eval(BEGIN_ROTATION_SCRIPT, Collections.singletonList(generationKey()),
+                Collections.emptyList());
+        if ((Long) result < 0) {
+            throw new IllegalStateException("Rotation of " + name + " already in progress");
+        }
+        refresh();
+    }
+
+    /**
+     * 结束轮换：逐个删除旧一代的分片，分片之间停顿一段时间，避免集中释放内存
+     *
+     * @param pauseMillis 分片之间的停顿（毫秒）
+     */
+    public void finishRotation(long pauseMillis) throws InterruptedException {
+        refresh();
+        String[] previousKeys = generation.previousKeys;
+        if (previousKeys == null) {
+            return;
+        }
+        // 先切换代数再删除，删除过程中查询不再访问旧一代
+        jedis.hdel(generationKey(), "previous");
+        refresh();
+        unlinkAll(previousKeys, pauseMillis);
+    }
+
+    /**
+     * 从 Redis 重新读取当前代数
+     */
+    public void refresh() {
+        Map<String, String> state = jedis.hgetAll(generationKey());
+        long current = parseGeneration(state.get("current"));
+        String previous = state.get("previous");
+        generation = previous == null
+                ? new Generation(current, shardKeys(current), -1, null)
+                : new Generation(current, shardKeys(current), Long.parseLong(previous), shardKeys(Long.parseLong(previous)));
+    }
+
+    /**
+     * 删除布隆过滤器，逐个分片 UNLINK（集群下分片位于不同 slot，不能一次删除）
+     */
+    public void delete() throws InterruptedException {
+        Generation current = generation;
+        unlinkAll(current.currentKeys, 0);
+        if (current.previousKeys != null) {
+            unlinkAll(current.previousKeys, 0);
+        }
+        jedis.unlink(generationKey());
+        refresh();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public long getShardBitSize() {
+        return shardBitSize;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public boolean isRotating() {
+        return generation.previousKeys != null;
+    }
+
+    /**
+     * 在一个 pipeline 中用 view 的各代分片检查尚未命中的元素，命中的置为 true
+     *
+     * @return 分片命令之后读到的当前代数
+     */
+    private long test(Generation view, long[] hashes, boolean[] found) {
+        Map<Integer, List<Integer>> itemsByShard = new HashMap<>();
+        for (int n = 0; n < hashes.length; n++) {
+            if (!found[n]) {
+                itemsByShard.computeIfAbsent(shard(hashes[n]), s -> new ArrayList<>()).add(n);
+            }
+        }
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Response<List<Long>>> responses = new ArrayList<>();
+        long current = pipelined(pipeline -> {
+            for (Map.Entry<Integer, List<Integer>> entry : itemsByShard.entrySet()) {
+                List<Integer> indexes = entry.getValue();
+                String[] args = new String[indexes.size() * hashCount * 3];
+                int a = 0;
+                for (int n : indexes) {
+                    for (int i = 0; i < hashCount; i++) {
+                        args[a++] = "GET";
+                        args[a++] = "u1";
+                        args[a++] = String.valueOf(HashUtils.index(hashes[n], i, shardBitSize));
+                    }
+                }
+                batches.add(indexes);
+                responses.add(pipeline.bitfield(view.currentKeys[entry.getKey()], args));
+                if (view.previousKeys != null) {
+                    batches.add(indexes);
+                    responses.add(pipeline.bitfield(view.previousKeys[entry.getKey()], args));
+                }
+            }
+        });
+        for (int b = 0; b < batches.size(); b++) {
+            List<Integer> indexes = batches.get(b);
+            List<Long> bits = responses.get(b).get();
+            for (int j = 0; j < indexes.size(); j++) {
+                boolean all = true;
+                for (int i = 0; i < hashCount && all; i++) {
+                    all = bits.get(j * hashCount + i) == 1;
+                }
+                if (all) {
+                    found[indexes.get(j)] = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在 pipeline 中执行一组分片命令，之后读取当前代数
+     * 单机时 HGET 追加在同一个 pipeline 末尾，同一连接上按顺序执行；
+     * 集群下各节点的命令并行执行，HGET 在 pipeline 完成后单独发送，保证读到的代数不早于分片命令
+     */
+    private long pipelined(Consumer<PipelineCommands> commands) {
+        if (cluster != null) {
+            try (ClusterPipeline pipeline = new ClusterPipeline(cluster)) {
+                commands.accept(pipeline);
+                pipeline.sync();
+            }
+            return parseGeneration(jedis.hget(generationKey(), "current"));
+        }
+        try (Connection connection = pool.getResource(); Pipeline pipeline = new Pipeline(connection)) {
+            commands.accept(pipeline);
+            Response<String> current = pipeline.hget(generationKey(), "current");
+            pipeline.sync();
+            return parseGeneration(current.get());
+        }
+    }
+
+    private void unlinkAll(String[] keys, long pauseMillis) throws InterruptedException {
+        for (int i = 0; i < keys.length; i++) {
+            jedis.unlink(keys[i]);
+            if (pauseMillis > 0 && i < keys.length - 1) {
+                TimeUnit.MILLISECONDS.sleep(pauseMillis);
+            }
+        }
+    }
+
+    /**
+     * 第 generation 代的分片 key，第 0 代不带后缀
+     */
+    private String[] shardKeys(long generation) {
+        String[] keys = new String[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            keys[i] = name + ":{" + name + ":" + i + "}" + (generation == 0 ? "" : ":" + generation);
+        }
+        return keys;
+    }
+
+    private String generationKey() {
+        return name + ":generation";
+    }
+
+    private static long parseGeneration(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    /**
+     * 非 pipeline 命令使用的集群客户端，重试参数与 JedisCluster 的默认值一致；不关闭，连接归调用方所有
+     */
+    private static UnifiedJedis clusterClient(ClusterConnectionProvider cluster) {
+        return new UnifiedJedis(cluster, JedisCluster.DEFAULT_MAX_ATTEMPTS,
+                Duration.ofMillis((long) JedisCluster.DEFAULT_TIMEOUT * JedisCluster.DEFAULT_MAX_ATTEMPTS));
+    }
+
+    /**
+     * 选择分片，使用与位下标不同的哈希比特，避免分片与位下标相关
+     */
+    private int shard(long hash) {
+        return (int) ((HashUtils.fmix64(hash) & Long.MAX_VALUE) % shardCount);
+    }
+
+    private static final class Generation {
+        final long current;          // 当前代数
+        final String[] currentKeys;  // 写入和查询的分片
+        final long previous;         // 轮换期间的旧一代代数，不在轮换时为 -1
+        final String[] previousKeys; // 轮换期间的旧一代分片，只查询，null 表示不在轮换
+
+        Generation(long current, String[] currentKeys, long previous, String[] previousKeys) {
+            this.current = current;
+            this.currentKeys = currentKeys;
+            this.previous = previous;
+            this.previousKeys = previousKeys;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        JedisPooled jedis = new JedisPooled("localhost", 6379);
+        ShardedBloomFilter bloomFilter = new ShardedBloomFilter(jedis, 16);
+        bloomFilter.add("apple");
+        bloomFilter.add("banana");
+        System.out.println("Contains 'apple': " + bloomFilter.contains("apple")); // true
+        System.out.println("Contains 'pear': " + bloomFilter.contains("pear"));   // false (可能误判)
+
+        // 轮换：新一代只重新写入 banana，轮换期间旧数据仍然可查
+        bloomFilter.beginRotation();
+        bloomFilter.add("banana");
+        System.out.println("Contains 'apple' during rotation: " + bloomFilter.contains("apple")); // true
+        bloomFilter.finishRotation(10);
+        System.out.println("Contains 'apple' after rotation: " + bloomFilter.contains("apple"));   // false
+        System.out.println("Contains 'banana' after rotation: " + bloomFilter.contains("banana")); // true
+
+        bloomFilter.delete();
+        jedis.close();
+    }
+}
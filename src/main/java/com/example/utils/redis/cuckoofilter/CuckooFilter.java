@@ -0,0 +1,357 @@
+package com.example.utils.redis.cuckoofilter;
+
+import com.example.utils.HashUtils;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 本地布谷鸟过滤器
+ * 给无法承受每次查询一次网络往返的单机服务使用，与 RedisCuckooFilter 参数一致：
+ *  - 每个桶 4 个 16 位指纹，正好打包成一个 long，全部桶存放在一个 AtomicLongArray（底层即 long[]）中，没有任何按元素分配的对象；
+ *  - 查询无锁：读取两个候选桶各一个 long，用 SWAR 位运算一次比较 4 个槽位；
+ *  - 写入分段加锁：普通插入、删除只锁两个候选桶所在的分段；需要踢出重定位时锁住全部分段，
+ *    先找出完整的踢出路径，再从路径末端向前"先复制后覆盖"，保证并发查询期间每个指纹始终至少在一个候选桶中可见；
+ *  - save/load 经一个 1MB 的直接缓冲区分块批量写入/读取整个状态。
+ */
+public class CuckooFilter {
+
+    private static final int BUCKET_SIZE = 4;          // 每个桶的槽位数（4 * 16 位 = 64 位）
+    private static final int MAX_KICKS = 500;          // 最大踢出次数
+    private static final int STRIPES = 64;             // 锁分段数
+    private static final long ALT_MULTIPLIER = 0x5bd1e995L;
+    private static final long LANE_ONES = 0x0001000100010001L;
+    private static final long LANE_HIGHS = 0x8000800080008000L;
+    private static final int FILE_MAGIC = 0x43554b46;  // "CUKF"
+    private static final int HEADER_SIZE = 16;         // magic(4) + bucketCount(4) + size(8)
+    private static final int CHUNK_SIZE = 1 << 20;     // save/load 的分块大小（字节）
+
+    private final AtomicLongArray buckets;
+    private final int bucketMask;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * @param bucketCount 桶数量，必须是 2 的幂，容量约为 bucketCount * 4 * 0.95
+     */
+    public CuckooFilter(int bucketCount) {
+        if (bucketCount <= 0 || Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalArgumentException("Bucket count must be a power of two");
+        }
+        this.buckets = new AtomicLongArray(bucketCount);
+        this.bucketMask = bucketCount - 1;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 按预期元素个数创建，装载率按 90% 估算
+     */
+    public static CuckooFilter create(long expectedInsertions) {
+        long needed = (long) Math.ceil(expectedInsertions / (BUCKET_SIZE * 0.9));
+        long bucketCount = Long.highestOneBit(Math.max(1, needed - 1)) << 1;
+        if (bucketCount > 1 << 30) {
+            throw new IllegalArgumentException("Too many expected insertions: " + expectedInsertions);
+        }
+        return new CuckooFilter((int) bucketCount);
+    }
+
+    /**
+     * 检查元素是否可能存在，无锁
+     */
+    public boolean contains(String item) {
+        long hash = HashUtils.hash64(item);
+        int fp = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        return hasFingerprint(buckets.get(i1), fp) || hasFingerprint(buckets.get(altIndex(i1, fp)), fp);
+    }
+
+    /**
+     * 添加元素
+     *
+     * @return 是否添加成功，过滤器过满时返回 false
+     */
+    public boolean add(String item) {
+        long hash = HashUtils.hash64(item);
+        int fp = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        int i2 = altIndex(i1, fp);
+        ReentrantLock first = locks[Math.min(stripe(i1), stripe(i2))];
+        ReentrantLock second = locks[Math.max(stripe(i1), stripe(i2))];
+        first.lock();
+        second.lock();
+        try {
+            if (putIntoEmptySlot(i1, fp) || putIntoEmptySlot(i2, fp)) {
+                size.increment();
+                return true;
+            }
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+        return addWithRelocation(i1, i2, fp);
+    }
+
+    /**
+     * 删除元素（只能删除确实添加过的元素）
+     *
+     * @return 是否找到并删除
+     */
+    public boolean remove(String item) {
+        long hash = HashUtils.hash64(item);
+        int fp = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        int i2 = altIndex(i1, fp);
+        ReentrantLock first = locks[Math.min(stripe(i1), stripe(i2))];
+        ReentrantLock second = locks[Math.max(stripe(i1), stripe(i2))];
+        first.lock();
+        second.lock();
+        try {
+            if (removeFromBucket(i1, fp) || removeFromBucket(i2, fp)) {
+                size.decrement();
+                return true;
+            }
+            return false;
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+
+    /**
+     * 当前元素个数
+     */
+    public long size() {
+        return size.sum();
+    }
+
+    public int getBucketCount() {
+        return buckets.length();
+    }
+
+    /**
+     * 保存到文件：按 1MB 分块经直接缓冲区写入通道，文件大小不受 int 限制（2^30 个桶即 8GB）
+     * 写入期间持有全部分段锁，保证保存的是一致的快照
+     */
+    public void save(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            lockAll();
+            try {
+                int bucketCount = buckets.length();
+                buffer.putInt(FILE_MAGIC).putInt(bucketCount).putLong(size.sum());
+                for (int i = 0; i < bucketCount; i++) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        writeChunk(channel, buffer);
+                    }
+                    buffer.putLong(buckets.get(i));
+                }
+                writeChunk(channel, buffer);
+            } finally {
+                unlockAll();
+            }
+        }
+    }
+
+    /**
+     * 从文件加载：先读文件头，再按 1MB 分块读取全部桶
+     */
+    public static CuckooFilter load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            ((Buffer) buffer).limit(HEADER_SIZE);
+            if (!readChunk(channel, buffer) || buffer.getInt() != FILE_MAGIC) {
+                throw new IOException("Not a cuckoo filter file: " + file);
+            }
+            int bucketCount = buffer.getInt();
+            long count = buffer.getLong();
+            if (bucketCount <= 0 || Integer.bitCount(bucketCount) != 1
+                    || channel.size() - HEADER_SIZE != bucketCount * (long) Long.BYTES) {
+                throw new IOException("Truncated cuckoo filter file: " + file);
+            }
+            CuckooFilter filter = new CuckooFilter(bucketCount);
+            int i = 0;
+            while (i < bucketCount) {
+                ((Buffer) buffer).clear();
+                ((Buffer) buffer).limit((int) Math.min(CHUNK_SIZE, (bucketCount - i) * (long) Long.BYTES));
+                if (!readChunk(channel, buffer)) {
+                    throw new IOException("Truncated cuckoo filter file: " + file);
+                }
+                while (buffer.hasRemaining()) {
+                    filter.buckets.lazySet(i++, buffer.getLong());
+                }
+            }
+            filter.size.add(count);
+            return filter;
+        }
+    }
+
+    // 通过 Buffer 调用 flip/clear/limit，用高版本 JDK 编译时仍能在 JDK 8 上运行
+    private static void writeChunk(FileChannel channel, ByteBuffer buffer) throws IOException {
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    /**
+     * 读满缓冲区（到 limit 为止）后 flip，文件提前结束时返回 false
+     */
+    private static boolean readChunk(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        ((Buffer) buffer).flip();
+        return true;
+    }
+
+    /**
+     * 两个候选桶都满时锁住全部分段做踢出重定位
+     */
+    private boolean addWithRelocation(int i1, int i2, int fp) {
+        lockAll();
+        try {
+            // 获取全部锁之前其他线程可能已经腾出了位置
+            if (putIntoEmptySlot(i1, fp) || putIntoEmptySlot(i2, fp)) {
+                size.increment();
+                return true;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int[] pathBuckets = new int[MAX_KICKS];
+            int[] pathSlots = new int[MAX_KICKS];
+            int[] pathVictims = new int[MAX_KICKS];
+            int bucket = random.nextBoolean() ? i1 : i2;
+            for (int n = 0; n < MAX_KICKS; n++) {
+                int slot = pickSlot(bucket, pathBuckets, pathSlots, n, random);
+                if (slot < 0) {
+                    return false;
+                }
+                int victim = lane(buckets.get(bucket), slot);
+                pathBuckets[n] = bucket;
+                pathSlots[n] = slot;
+                pathVictims[n] = victim;
+                bucket = altIndex(bucket, victim);
+                int empty = emptySlot(buckets.get(bucket));
+                if (empty >= 0) {
+                    // 从路径末端向前执行：先把指纹复制到新位置，再覆盖旧位置
+                    setLane(bucket, empty, victim);
+                    for (int j = n; j > 0; j--) {
+                        setLane(pathBuckets[j], pathSlots[j], pathVictims[j - 1]);
+                    }
+                    setLane(pathBuckets[0], pathSlots[0], fp);
+                    size.increment();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * 随机选择一个不在当前路径中的槽位，全部槽位都已在路径中时返回 -1
+     */
+    private static int pickSlot(int bucket, int[] pathBuckets, int[] pathSlots, int length, ThreadLocalRandom random) {
+        int start = random.nextInt(BUCKET_SIZE);
+        for (int k = 0; k < BUCKET_SIZE; k++) {
+            int slot = (start + k) & (BUCKET_SIZE - 1);
+            boolean used = false;
+            for (int j = 0; j < length && !used; j++) {
+                used = pathBuckets[j] == bucket && pathSlots[j] == slot;
+            }
+            if (!used) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean putIntoEmptySlot(int bucket, int fp) {
+        int slot = emptySlot(buckets.get(bucket));
+        if (slot < 0) {
+            return false;
+        }
+        setLane(bucket, slot, fp);
+        return true;
+    }
+
+    private boolean removeFromBucket(int bucket, int fp) {
+        long word = buckets.get(bucket);
+        for (int slot = 0; slot < BUCKET_SIZE; slot++) {
+            if (lane(word, slot) == fp) {
+                setLane(bucket, slot, 0);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 修改桶中的一个槽位，调用方必须持有该桶所在分段的锁
+     */
+    private void setLane(int bucket, int slot, int fp) {
+        int shift = slot << 4;
+        long word = buckets.get(bucket);
+        buckets.set(bucket, (word & ~(0xFFFFL << shift)) | ((long) fp << shift));
+    }
+
+    private static int lane(long word, int slot) {
+        return (int) (word >>> (slot << 4)) & 0xFFFF;
+    }
+
+    private static int emptySlot(long word) {
+        for (int slot = 0; slot < BUCKET_SIZE; slot++) {
+            if (lane(word, slot) == 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * SWAR：一次判断 4 个 16 位槽位中是否有等于 fp 的
+     */
+    private static boolean hasFingerprint(long word, int fp) {
+        long x = word ^ (fp * LANE_ONES);
+        return ((x - LANE_ONES) & ~x & LANE_HIGHS) != 0;
+    }
+
+    private static int fingerprint(long hash) {
+        int fp = (int) (hash >>> 48);
+        return fp == 0 ? 1 : fp;
+    }
+
+    private int altIndex(int index, int fp) {
+        return (index ^ (int) (fp * ALT_MULTIPLIER)) & bucketMask;
+    }
+
+    private static int stripe(int bucket) {
+        return bucket & (STRIPES - 1);
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+}
@@ -1,6 +1,322 @@
 package com.example.utils.redis.cuckoofilter;
 
+import com.example.utils.HashUtils;
+import com.example.utils.redis.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * 布谷鸟过滤器
+ * 基于 Redis 字符串实现，支持删除，低误判率下比布隆过滤器更省空间：
+ *  - 每个桶 4 个槽位，每个槽位存 16 位指纹（0 表示空），用 BITFIELD u16 读写；
+ *  - 元素的两个候选桶 i1 = hash & mask，i2 = i1 ^ (fp * 0x5bd1e995) & mask，可以只凭指纹互相推导；
+ *  - 插入（含有界的踢出重定位）、删除各是一个 Lua 脚本，查询是一条 BITFIELD GET（同时读取两个桶的 8 个槽位），
+ *    每个元素每种操作只需一次往返；踢出次数用尽时脚本会回滚已做的踢出，不会丢失已有元素。
+ * 误判率约为 2 * 4 / 2^16 ≈ 0.012%，装载率可以达到 95% 左右。
  */
+public class RedisCuckooFilter {
+
+    private static final String REDIS_KEY = "cuckoo_filter";
+    private static final int BUCKET_COUNT = 1 << 22;  // 桶数量，必须是 2 的幂，共 32MB
+    private static final int BUCKET_SIZE = 4;         // 每个桶的槽位数
+    private static final int MAX_KICKS = 500;         // 最大踢出次数
+    private static final long ALT_MULTIPLIER = 0x5bd1e995L; // 计算备选桶时的指纹乘数
+
+    /**
+     * KEYS[1] 过滤器 key，KEYS[2] 元素计数 key
+     * ARGV: 指纹, i1, i2, 每桶槽位数, 桶下标掩码, 最大踢出次数, 随机种子
+     */
+    private static final LuaScript INSERT_SCRIPT = new LuaScript(
+            "local key = KEYS[1] " +
+            "local fp = tonumber(ARGV[1]) " +
+            "local i1 = tonumber(ARGV[2]) " +
+            "local i2 = tonumber(ARGV[3]) " +
+            "local size = tonumber(ARGV[4]) " +
+            "local mask = tonumber(ARGV[5]) " +
+            "local maxKicks = tonumber(ARGV[6]) " +
+            "local function tryPut(b, f) " +
+            "  for s = 0, size - 1 do " +
+            "    local pos = '#' .. (b * size + s) " +
+            "    if redis.call('bitfield', key, 'GET', 'u16', pos)[1] == 0 then " +
+            "      redis.call('bitfield', key, 'SET', 'u16', pos, f) " +
+            "      return true " +
+            "    end " +
+            "  end " +
+            "  return false " +
+            "end " +
+            "if tryPut(i1, fp) or tryPut(i2, fp) then " +
+            "  redis.call('incr', KEYS[2]) " +
+            "  return 1 " +
+            "end " +
+            "math.randomseed(tonumber(ARGV[7])) " +
+            "local b = i1 " +
+            "if math.random(0, 1) == 1 then b = i2 end " +
+            "local positions = {} " +
+            "local victims = {} " +
+            "for n = 1, maxKicks do " +
+            "  local pos = '#' .. (b * size + math.random(0, size - 1)) " +
+            "  local victim = redis.call('bitfield', key, 'SET', 'u16', pos, fp)[1] " +
+            "  positions[n] = pos " +
+            "  victims[n] = victim " +
+            "  fp = victim " +
+            "  b = bit.band(bit.bxor(b, fp * " + ALT_MULTIPLIER + "), mask) " +
+            "  if tryPut(b, fp) then " +
+            "    redis.call('incr', KEYS[2]) " +
+            "    return 1 " +
+            "  end " +
+            "end " +
+            "for n = #positions, 1, -1 do " +
+            "  redis.call('bitfield', key, 'SET', 'u16', positions[n], victims[n]) " +
+            "end " +
+            "return 0");
+
+    /**
+     * KEYS[1] 过滤器 key，KEYS[2] 元素计数 key
+     * ARGV: 指纹, i1, i2, 每桶槽位数
+     */
+    private static final LuaScript DELETE_SCRIPT = new LuaScript(
+            "local fp = tonumber(ARGV[1]) " +
+            "local size = tonumber(ARGV[4]) " +
+            "for _, b in ipairs({tonumber(ARGV[2]), tonumber(ARGV[3])}) do " +
+            "  for s = 0, size - 1 do " +
+            "    local pos = '#' .. (b * size + s) " +
+            "    if redis.call('bitfield', KEYS[1], 'GET', 'u16', pos)[1] == fp then " +
+            "      redis.call('bitfield', KEYS[1], 'SET', 'u16', pos, 0) " +
+            "      redis.call('decr', KEYS[2]) " +
+            "      return 1 " +
+            "    end " +
+            "  end " +
+            "end " +
+            "return 0");
+
+    private final Jedis jedis;
+    private final String key;
+    private final String countKey;
+    private final int bucketMask;
+    private boolean scriptsLoaded;
+
+    public RedisCuckooFilter(Jedis jedis) {
+        this(jedis, REDIS_KEY, BUCKET_COUNT);
+    }
+
+    /**
+     * @param jedis       Redis 连接
+     * @param key         过滤器 key
+     * @param bucketCount 桶数量，必须是 2 的幂
+     */
+    public RedisCuckooFilter(Jedis jedis, String key, int bucketCount) {
+        if (bucketCount <= 0 || Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalArgumentException("Bucket count must be a power of two");
+        }
+        this.jedis = jedis;
+        this.key = key;
+        this.countKey = key + ":count";
+        this.bucketMask = bucketCount - 1;
+    }
+
+    /**
+     * 添加单个元素
+     *
+     * @return 是否添加成功，过滤器过满时返回 false
+     */
+    public boolean add(String item) {
+        return addAll(Collections.singletonList(item)) == 1;
+    }
+
+    /**
+     * 批量添加元素，每个元素一次 EVALSHA，整体一个 pipeline
+     *
+     * @return 成功添加的元素个数
+     */
+    public int addAll(List<String> items) {
+        return runScript(INSERT_SCRIPT, items);
+    }
+
+    /**
+     * 检查元素是否可能存在
+     */
+    public boolean contains(String item) {
+        return containsAll(Collections.singletonList(item))[0];
+    }
+
+    /**
+     * 批量检查元素是否可能存在，每个元素一条 BITFIELD GET，一次往返
+     */
+    @SuppressWarnings("unchecked")
+    public boolean[] containsAll(List<String> items) {
+        boolean[] found = new boolean[items.size()];
+        if (items.isEmpty()) {
+            return found;
+        }
+        int[] fingerprints = new int[items.size()];
+        List<Object> results;
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (int n = 0; n < items.size(); n++) {
+                long hash = HashUtils.hash64(items.get(n));
+                int fp = fingerprint(hash);
+                int i1 = (int) hash & bucketMask;
+                int i2 = altIndex(i1, fp);
+                fingerprints[n] = fp;
+                String[] args = new String[BUCKET_SIZE * 2 * 3];
+                int p = 0;
+                for (int bucket : new int[]{i1, i2}) {
+                    for (int s = 0; s < BUCKET_SIZE; s++) {
+                        args[p++] = "GET";
+                        args[p++] = "u16";
+                        args[p++] = "#" + ((long) bucket * BUCKET_SIZE + s);
+                    }
+                }
+                pipeline.bitfield(key, args);
+            }
+            results = pipeline.syncAndReturnAll();
+        }
+        for (int n = 0; n < found.length; n++) {
+            for (Long slot : (List<Long>) results.get(n)) {
+                if (slot != null && slot == fingerprints[n]) {
+                    found[n] = true;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 删除单个元素（只能删除确实添加过的元素，否则可能误删指纹相同的其他元素）
+     *
+     * @return 是否找到并删除
+     */
+    public boolean remove(String item) {
+        return removeAll(Collections.singletonList(item)) == 1;
+    }
+
+    /**
+     * 批量删除元素，每个元素一次 EVALSHA，整体一个 pipeline
+     *
+     * @return 实际删除的元素个数
+     */
+    public int removeAll(List<String> items) {
+        return runScript(DELETE_SCRIPT, items);
+    }
+
+    /**
+     * 当前元素个数
+     */
+    public long size() {
+        String count = jedis.get(countKey);
+        return count == null ? 0 : Long.parseLong(count);
+    }
+
+    /**
+     * 删除整个过滤器
+     */
+    public void delete() {
+        jedis.del(key, countKey);
+    }
+
+    /**
+     * 对每个元素执行一次脚本，返回结果为 1 的个数
+     */
+    private int runScript(LuaScript script, List<String> items) {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        if (!scriptsLoaded) {
+            INSERT_SCRIPT.load(jedis);
+            DELETE_SCRIPT.load(jedis);
+            scriptsLoaded = true;
+        }
+        List<String> keys = Arrays.asList(key, countKey);
+        List<List<String>> argsList = new ArrayList<>(items.size());
+        List<Object> results;
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (String item : items) {
+                List<String> args = scriptArgs(item);
+                argsList.add(args);
+                script.evalsha(pipeline, keys, args);
+            }
+            results = pipeline.syncAndReturnAll();
+        }
+        int succeeded = 0;
+        for (int n = 0; n < results.size(); n++) {
+            Object result = results.get(n);
+            if (LuaScript.isNoScript(result)) {
+                // 脚本缓存被清空，单独用 EVAL 重试
+                result = script.eval(jedis, keys, argsList.get(n));
+            }
+            if (Long.valueOf(1).equals(result)) {
+                succeeded++;
+            }
+        }
+        return succeeded;
+    }
+
+    private List<String> scriptArgs(String item) {
+        long hash = HashUtils.hash64(item);
+        int fp = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        int i2 = altIndex(i1, fp);
+        return Arrays.asList(
+                String.valueOf(fp),
+                String.valueOf(i1),
+                String.valueOf(i2),
+                String.valueOf(BUCKET_SIZE),
+                String.valueOf(bucketMask),
+                String.valueOf(MAX_KICKS),
+                String.valueOf(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE)));
+    }
+
+    /**
+     * 16 位指纹，取哈希的高位，0 保留为空槽
+     */
+    private static int fingerprint(long hash) {
+        int fp = (int) (hash >>> 48);
+        return fp == 0 ? 1 : fp;
+    }
+
+    /**
+     * 备选桶下标，与 Lua 脚本中的计算保持一致：(i ^ (fp * 0x5bd1e995)) & mask
+     */
+    private int altIndex(int index, int fp) {
+        return (index ^ (int) (fp * ALT_MULTIPLIER)) & bucketMask;
+    }
+
+    public static void main(String[] args) {
+        Jedis jedis = new Jedis("localhost", 6379);
+        RedisCuckooFilter cuckooFilter = new RedisCuckooFilter(jedis, REDIS_KEY, 1 << 10);
+
+        System.out.println("Add 'apple': " + cuckooFilter.add("apple")); // true
+        System.out.println("AddAll [banana, orange, grape]: "
+                + cuckooFilter.addAll(Arrays.asList("banana", "orange", "grape"))); // 3
+        System.out.println("ContainsAll [apple, pear, grape]: "
+                + Arrays.toString(cuckooFilter.containsAll(Arrays.asList("apple", "pear", "grape")))); // [true, false, true]
+
+        // 删除单个元素
+        System.out.println("Remove 'apple': " + cuckooFilter.remove("apple")); // true
+        System.out.println("Contains 'apple' after remove: " + cuckooFilter.contains("apple")); // false
+        System.out.println("Size: " + cuckooFilter.size()); // 3
+
+        // 写满过滤器：1024 个桶 * 4 个槽位
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 4096; i++) {
+            items.add("item-" + i);
+        }
+        int added = cuckooFilter.addAll(items);
+        System.out.println("Added " + added + " of " + items.size() + ", load factor: "
+                + (double) cuckooFilter.size() / (4 * 1024));
+        int present = 0;
+        for (boolean found : cuckooFilter.containsAll(items)) {
+            present += found ? 1 : 0;
+        }
+        System.out.println("Present after fill: " + present); // >= added，踢出失败会回滚，不丢失已有元素
 
+        cuckooFilter.delete();
+        jedis.close();
+    }
+}
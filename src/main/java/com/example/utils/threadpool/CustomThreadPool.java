@@ -1,5 +1,8 @@
 package com.example.utils.threadpool;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -13,7 +16,7 @@ public class CustomThreadPool {
 
     public CustomThreadPool(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
                             int queueCapacity, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
-        BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<>(queueCapacity);
+        BlockingQueue<Runnable> workQueue = new DiscardTrackingQueue(queueCapacity);
         this.executor = new ThreadPoolExecutor(
                 corePoolSize,
                 maximumPoolSize,
@@ -21,21 +24,52 @@ public class CustomThreadPool {
                 unit,
                 workQueue,
                 threadFactory,
-                handler
-        );
+                (r, e) -> {
+                    // 记录拒绝次数，execute 据此判断任务最终是否被接收
+                    if (r instanceof PoolTask) {
+                        ((PoolTask) r).rejections++;
+                    }
+                    handler.rejectedExecution(r, e);
+                }
+        ) {
+            @Override
+            public void execute(Runnable command) {
+                if (!(command instanceof PoolTask)) {
+                    super.execute(command);
+                    return;
+                }
+                PoolTask task = (PoolTask) command;
+                int rejections = task.rejections;
+                super.execute(command);
+                if (task.rejections == rejections) {
+                    // 这次提交没有进入拒绝策略，任务进入了队列或交给了新线程；
+                    // 也包括拒绝策略重新提交成功的情况（如 DiscardOldestPolicy 淘汰最老的任务后重新提交）
+                    task.accepted = true;
+                }
+            }
+        };
     }
 
     /**
      * 提交任务
+     *
+     * @return 是否被接收；拒绝策略被调用且任务没有执行（如只记录日志后丢弃）时返回 false，
+     * 拒绝策略在调用线程上执行了任务（CallerRunsPolicy）或重新提交成功时返回 true
      */
-    public void execute(Runnable task) {
-        executor.execute(() -> {
-            try {
-                task.run();
-            } finally {
-                completedTaskCount.incrementAndGet();
-            }
-        });
+    public boolean execute(Runnable task) {
+        return execute(task, null);
+    }
+
+    /**
+     * 提交任务，任务被接收后没有执行就被移出队列（如 DiscardOldestPolicy 淘汰、shutdownNow 清空）时回调 onDiscard
+     *
+     * @param onDiscard 在移出任务的线程上执行，可以为 null
+     * @return 与 execute(Runnable) 相同
+     */
+    public boolean execute(Runnable task, Runnable onDiscard) {
+        PoolTask poolTask = new PoolTask(task, onDiscard);
+        executor.execute(poolTask);
+        return poolTask.accepted || poolTask.started;
     }
 
     /**
@@ -45,6 +79,19 @@ public class CustomThreadPool {
         executor.shutdown();
     }
 
+    /**
+     * 立即关闭线程池，中断执行中的任务
+     *
+     * @return 队列中尚未执行的任务，已按丢弃回调过 onDiscard
+     */
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = new ArrayList<>();
+        for (Runnable r : executor.shutdownNow()) {
+            tasks.add(r instanceof PoolTask ? ((PoolTask) r).task : r);
+        }
+        return tasks;
+    }
+
     /**
      * 获取线程池状态
      */
@@ -57,6 +104,90 @@ public class CustomThreadPool {
         );
     }
 
+    private final class PoolTask implements Runnable {
+        private final Runnable task;
+        private final Runnable onDiscard;
+        int rejections;   // 拒绝策略被调用的次数，只在提交线程上读写
+        boolean accepted; // 是否被接收，只在提交线程上读写
+        volatile boolean started;
+
+        PoolTask(Runnable task, Runnable onDiscard) {
+            this.task = task;
+            this.onDiscard = onDiscard;
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            try {
+                task.run();
+            } finally {
+                completedTaskCount.incrementAndGet();
+            }
+        }
+
+        void discarded() {
+            if (onDiscard != null && !started) {
+                onDiscard.run();
+            }
+        }
+    }
+
+    /**
+     * 工作线程只通过 take / poll(timeout) 取任务，其他方式移出队列的任务
+     * （拒绝策略中的 poll、shutdownNow 的 drainTo / remove、clear）不会再执行，按丢弃通知
+     */
+    private static final class DiscardTrackingQueue extends LinkedBlockingQueue<Runnable> {
+
+        DiscardTrackingQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public Runnable poll() {
+            return discarded(super.poll());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!super.remove(o)) {
+                return false;
+            }
+            discarded(o);
+            return true;
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> c) {
+            return drainTo(c, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> c, int maxElements) {
+            List<Runnable> drained = new ArrayList<>();
+            int count = super.drainTo(drained, maxElements);
+            for (Runnable r : drained) {
+                discarded(r);
+            }
+            c.addAll(drained);
+            return count;
+        }
+
+        @Override
+        public void clear() {
+            while (poll() != null) {
+                // poll 已按丢弃通知
+            }
+        }
+
+        private static <T> T discarded(T r) {
+            if (r instanceof PoolTask) {
+                ((PoolTask) r).discarded();
+            }
+            return r;
+        }
+    }
+
     /**
      * 线程池状态类
      */
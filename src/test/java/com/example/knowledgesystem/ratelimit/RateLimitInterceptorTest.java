@@ -0,0 +1,101 @@
+package com.example.knowledgesystem.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RateLimitInterceptorTest {
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new TestController())
+                .addInterceptors(new RateLimitInterceptor())
+                .build();
+    }
+
+    @Test
+    void rejectsWith429AndRetryAfterWhenGlobalLimitIsExhausted() throws Exception {
+        mockMvc.perform(get("/global")).andExpect(status().isOk());
+        mockMvc.perform(get("/global")).andExpect(status().isOk());
+        mockMvc.perform(get("/global"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void limitsEachKeySeparately() throws Exception {
+        mockMvc.perform(get("/user").header("X-User-Id", "a")).andExpect(status().isOk());
+        mockMvc.perform(get("/user").header("X-User-Id", "a")).andExpect(status().isTooManyRequests());
+        mockMvc.perform(get("/user").header("X-User-Id", "b")).andExpect(status().isOk());
+    }
+
+    @Test
+    void slidingWindowReportsTimeUntilRequestSlidesOut() throws Exception {
+        mockMvc.perform(get("/window")).andExpect(status().isOk());
+        // 计数模式 10 个子窗口：请求在窗口后的第一个子窗口内逐渐滑出，60 到 66 秒之间
+        mockMvc.perform(get("/window"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(result -> {
+                    int retryAfter = Integer.parseInt(result.getResponse().getHeader("Retry-After"));
+                    assertTrue(retryAfter >= 60 && retryAfter <= 66, "Retry-After: " + retryAfter);
+                });
+    }
+
+    @Test
+    void rejectsKeyedSlidingWindowLimitAbovePackedMaximum() {
+        Exception e = assertThrows(Exception.class, () -> mockMvc.perform(get("/too-large").header("X-User-Id", "a")));
+        assertTrue(e instanceof IllegalArgumentException || e.getCause() instanceof IllegalArgumentException, e.toString());
+    }
+
+    @Test
+    void unannotatedHandlersAreNotLimited() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(get("/open")).andExpect(status().isOk());
+        }
+    }
+
+    @RestController
+    static class TestController {
+
+        @RateLimited(rate = 1, capacity = 2)
+        @GetMapping("/global")
+        public String global() {
+            return "ok";
+        }
+
+        @RateLimited(key = "header:X-User-Id", rate = 0.001, capacity = 1)
+        @GetMapping("/user")
+        public String user() {
+            return "ok";
+        }
+
+        @RateLimited(algorithm = RateLimited.Algorithm.SLIDING_WINDOW, rate = 1, window = 60_000, capacity = 1)
+        @GetMapping("/window")
+        public String window() {
+            return "ok";
+        }
+
+        @RateLimited(key = "header:X-User-Id", algorithm = RateLimited.Algorithm.SLIDING_WINDOW, rate = 1,
+                capacity = 2_000_000)
+        @GetMapping("/too-large")
+        public String tooLarge() {
+            return "ok";
+        }
+
+        @GetMapping("/open")
+        public String open() {
+            return "ok";
+        }
+    }
+}
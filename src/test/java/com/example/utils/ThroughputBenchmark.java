@@ -0,0 +1,71 @@
+package com.example.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各个 *Benchmark 共用的多线程吞吐测量
+ * 所有线程就绪后同时开始，测量从开始到全部完成的时间；每个线程统计操作返回 true 的次数并汇总到 sink，
+ * 避免 JIT 把没有副作用的调用优化掉。没有引入 JMH，结果只用于同一台机器上的相对比较，调用方应先预热一轮。
+ */
+public final class ThroughputBenchmark {
+
+    private static volatile long sink;
+
+    private ThroughputBenchmark() {
+    }
+
+    /**
+     * 被测操作
+     */
+    @FunctionalInterface
+    public interface Operation {
+        /**
+         * @param thread 线程序号，从 0 开始
+         * @param i      本线程内的第几次调用
+         */
+        boolean run(int thread, int i);
+    }
+
+    /**
+     * 多线程调用吞吐（次/毫秒）
+     *
+     * @param threads      线程数
+     * @param opsPerThread 每个线程的调用次数
+     */
+    public static long opsPerMillis(int threads, int opsPerThread, Operation operation) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long count = 0;
+                for (int i = 0; i < opsPerThread; i++) {
+                    if (operation.run(thread, i)) {
+                        count++;
+                    }
+                }
+                sink += count;
+                done.countDown();
+            });
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        executor.shutdown();
+        return (long) opsPerThread * threads / elapsedMillis;
+    }
+}
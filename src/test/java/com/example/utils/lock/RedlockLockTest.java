@@ -0,0 +1,168 @@
+package com.example.utils.lock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用进程内的节点代替独立 Redis 实例测试红锁
+ */
+class RedlockLockTest {
+
+    @Test
+    void acquiresWhenMinorityIsDown() {
+        List<InMemoryNode> nodes = nodes(5, 0);
+        nodes.get(0).down = true;
+        nodes.get(1).down = true;
+        RedlockLock lock = new RedlockLock(new ArrayList<>(nodes), "minority-down", 3000);
+
+        assertTrue(lock.tryLock());
+        assertTrue(lock.getValidityMillis() > 0);
+        assertTrue(lock.unlock());
+    }
+
+    @Test
+    void failsAndCleansUpWhenMajorityIsDown() throws InterruptedException {
+        List<InMemoryNode> nodes = nodes(5, 0);
+        for (int i = 0; i < 3; i++) {
+            nodes.get(i).down = true;
+        }
+        RedlockLock lock = new RedlockLock(new ArrayList<>(nodes), "majority-down", 3000);
+
+        assertFalse(lock.tryLock());
+        Thread.sleep(100); // 失败后的清理是异步的
+        assertEquals(0, nodes.get(3).locks.size() + nodes.get(4).locks.size());
+    }
+
+    @Test
+    void excludesOtherHolders() {
+        List<RedlockNode> nodes = new ArrayList<>(nodes(3, 0));
+        RedlockLock lock = new RedlockLock(nodes, "exclusive", 3000);
+        RedlockLock competitor = new RedlockLock(nodes, "exclusive", 3000);
+
+        assertTrue(lock.tryLock());
+        assertFalse(competitor.tryLock());
+        assertTrue(lock.unlock());
+        assertTrue(competitor.tryLock());
+        assertTrue(competitor.unlock());
+    }
+
+    @Test
+    void acquiresNodesInParallel() {
+        // 每个节点 200ms，串行至少需要 3 * 200ms 才能达到多数
+        RedlockLock lock = new RedlockLock(new ArrayList<>(nodes(5, 200)), "parallel", 3000);
+
+        long start = System.nanoTime();
+        assertTrue(lock.tryLock());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 450, "elapsed " + elapsedMillis + " ms");
+        assertTrue(lock.getValidityMillis() <= 3000 - 200);
+        lock.unlock();
+    }
+
+    @Test
+    void watchdogRenewsAndReportsLoss() throws InterruptedException {
+        List<InMemoryNode> nodes = nodes(3, 0);
+        RedlockLock lock = new RedlockLock(new ArrayList<>(nodes), "renewal", 1500);
+        CountDownLatch lost = new CountDownLatch(1);
+        lock.setLeaseLostListener(lost::countDown);
+
+        assertTrue(lock.tryLock());
+        Thread.sleep(3000); // 两倍租期
+        assertTrue(lock.isHeld());
+        assertEquals(3, nodes.stream().filter(node -> node.isHeld("redlock:renewal")).count());
+
+        // 多数节点上的锁被清除，下一次续期达不到多数
+        nodes.get(0).locks.clear();
+        nodes.get(1).locks.clear();
+        assertTrue(lost.await(3, TimeUnit.SECONDS));
+        assertFalse(lock.isHeld());
+        lock.unlock();
+    }
+
+    private static List<InMemoryNode> nodes(int count, long delayMillis) {
+        List<InMemoryNode> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add(new InMemoryNode(delayMillis));
+        }
+        return nodes;
+    }
+
+    /**
+     * 进程内节点：key -> (持有者, 过期时间)，可模拟延迟和宕机
+     */
+    static class InMemoryNode implements RedlockNode {
+        final Map<String, Entry> locks = new ConcurrentHashMap<>();
+        final long delayMillis;
+        volatile boolean down;
+
+        InMemoryNode(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public synchronized boolean tryAcquire(String key, String ownerId, long leaseMillis) {
+            simulateCall();
+            if (isHeld(key)) {
+                return false;
+            }
+            locks.put(key, new Entry(ownerId, System.currentTimeMillis() + leaseMillis));
+            return true;
+        }
+
+        @Override
+        public synchronized boolean renew(String key, String ownerId, long leaseMillis) {
+            simulateCall();
+            Entry entry = locks.get(key);
+            if (entry == null || !entry.ownerId.equals(ownerId) || !isHeld(key)) {
+                return false;
+            }
+            locks.put(key, new Entry(ownerId, System.currentTimeMillis() + leaseMillis));
+            return true;
+        }
+
+        @Override
+        public synchronized boolean release(String key, String ownerId) {
+            simulateCall();
+            Entry entry = locks.get(key);
+            return entry != null && entry.ownerId.equals(ownerId) && locks.remove(key, entry);
+        }
+
+        boolean isHeld(String key) {
+            Entry entry = locks.get(key);
+            return entry != null && entry.expireAt > System.currentTimeMillis();
+        }
+
+        private void simulateCall() {
+            if (down) {
+                throw new IllegalStateException("Node is down");
+            }
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    static class Entry {
+        final String ownerId;
+        final long expireAt;
+
+        Entry(String ownerId, long expireAt) {
+            this.ownerId = ownerId;
+            this.expireAt = expireAt;
+        }
+    }
+}
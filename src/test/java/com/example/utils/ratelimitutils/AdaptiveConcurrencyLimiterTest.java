@@ -0,0 +1,148 @@
+package com.example.utils.ratelimitutils;
+
+import com.example.utils.threadpool.CustomRejectedExecutionHandler;
+import com.example.utils.threadpool.CustomThreadFactory;
+import com.example.utils.threadpool.CustomThreadPool;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用可控时钟验证 RTT 不变时上限能增长到 maxLimit、RTT 上升和请求失败时上限收缩，
+ * 以及被线程池静默丢弃、从队列淘汰或清空的任务会归还许可
+ */
+class AdaptiveConcurrencyLimiterTest {
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long now;
+
+    @Test
+    void limitReachesMaxWhenRttIsFlat() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 1000, 1, TimeUnit.MILLISECONDS,
+                () -> now);
+        int maxLimit = 0;
+        for (int window = 0; window < 20_000 && maxLimit < 1000; window++) {
+            // 每个窗口占满上限，全部以相同的 RTT 完成
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            now += WINDOW;
+            for (int i = 0; i < acquired; i++) {
+                limiter.release(RTT);
+            }
+            maxLimit = Math.max(maxLimit, limiter.getLimit());
+        }
+        assertEquals(1000, maxLimit);
+    }
+
+    @Test
+    void limitShrinksWhenRttRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(100, 1, 1000, 1, TimeUnit.MILLISECONDS,
+                () -> now);
+        window(limiter, RTT, false); // 无排队 RTT
+        int previous = limiter.getLimit();
+        for (int i = 0; i < 15; i++) {
+            window(limiter, RTT * 10, false);
+            assertTrue(limiter.getLimit() < previous, "limit did not shrink: " + limiter.getLimit());
+            previous = limiter.getLimit();
+        }
+        assertTrue(previous < 50, "limit: " + previous);
+    }
+
+    @Test
+    void dropsCutTheLimitMultiplicatively() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(100, 1, 1000, 1, TimeUnit.MILLISECONDS,
+                () -> now);
+        window(limiter, RTT, true);
+        assertEquals(50, limiter.getLimit());
+        // 上限很小时也继续收缩，直到 minLimit
+        for (int i = 0; i < 10; i++) {
+            window(limiter, RTT, true);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    void silentlyDiscardedTasksReturnTheirPermits() throws InterruptedException {
+        CustomThreadPool threadPool = new CustomThreadPool(1, 1, 60, TimeUnit.SECONDS, 1,
+                new CustomThreadFactory(), new CustomRejectedExecutionHandler());
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10);
+        CountDownLatch blocker = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try {
+            // 一个线程执行、一个排队，其余被只记录日志的拒绝策略丢弃
+            assertTrue(limiter.execute(threadPool, blocked));
+            assertTrue(limiter.execute(threadPool, blocked));
+            for (int i = 0; i < 5; i++) {
+                assertFalse(limiter.execute(threadPool, blocked));
+            }
+            assertEquals(2, limiter.getInFlight());
+        } finally {
+            blocker.countDown();
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    void evictedAndDrainedTasksReturnTheirPermits() throws InterruptedException {
+        CustomThreadPool threadPool = new CustomThreadPool(1, 1, 60, TimeUnit.SECONDS, 1,
+                new CustomThreadFactory(), new ThreadPoolExecutor.DiscardOldestPolicy());
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            running.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        assertTrue(limiter.execute(threadPool, blocked));
+        running.await();
+        // 每次提交都淘汰队列中等待的任务，自己进入队列
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.execute(threadPool, blocked));
+        }
+        assertEquals(2, limiter.getInFlight());
+        // 清空队列，再中断执行中的任务
+        assertEquals(1, threadPool.shutdownNow().size());
+        for (int i = 0; i < 100 && limiter.getInFlight() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * 一个窗口：逐个完成 10 个请求，最后一个完成时窗口结束、更新上限
+     *
+     * @param dropped 是否以失败完成
+     */
+    private void window(AdaptiveConcurrencyLimiter limiter, long rtt, boolean dropped) {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+            if (i == 9) {
+                now += WINDOW;
+            }
+            if (dropped) {
+                limiter.releaseDropped();
+            } else {
+                limiter.release(rtt);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.utils.ratelimitutils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多线程在窗口边界附近并发请求，检查每个窗口的放行数
+ */
+class FixedWindowRateLimiterTest {
+    private static final long WINDOW = 1000;
+    private static final int LIMIT = 50;
+    private static final int THREADS = 8;
+
+    @Test
+    void resetsExactlyOnceAtRollover() {
+        AtomicLong now = new AtomicLong();
+        FixedWindowRateLimiter limiter = new FixedWindowRateLimiter(LIMIT, WINDOW, 1, now::get);
+        for (int i = 0; i < LIMIT; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        now.set(WINDOW);
+        assertEquals(0, limiter.currentCount());
+        assertTrue(limiter.tryAcquire());
+        assertEquals(1, limiter.currentCount());
+    }
+
+    @Test
+    void exactModeNeverOverAdmitsUnderContention() throws InterruptedException {
+        stress(1);
+    }
+
+    @Test
+    void stripedModeNeverOverAdmitsUnderContention() throws InterruptedException {
+        stress(4);
+    }
+
+    /**
+     * 一个线程不断推进时钟，其余线程持续请求；每个线程记下放行时限流器读到的时钟，
+     * 按窗口统计放行数，每个窗口都不能超过 limit，且大多数窗口能放满
+     */
+    private void stress(int stripes) throws InterruptedException {
+        AtomicLong time = new AtomicLong();
+        ThreadLocal<Long> lastRead = new ThreadLocal<>();
+        FixedWindowRateLimiter limiter = new FixedWindowRateLimiter(LIMIT, WINDOW, stripes, () -> {
+            long t = time.get();
+            lastRead.set(t);
+            return t;
+        });
+        Map<Long, AtomicInteger> admitted = new ConcurrentHashMap<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            new Thread(() -> {
+                while (running.get()) {
+                    if (limiter.tryAcquire()) {
+                        admitted.computeIfAbsent(lastRead.get() / WINDOW, w -> new AtomicInteger()).incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        long windows = 100;
+        for (long t = 0; t < windows * WINDOW; t += 100) {
+            time.set(t);
+            Thread.sleep(0, 20_000);
+        }
+        running.set(false);
+        done.await();
+
+        int full = 0;
+        for (Map.Entry<Long, AtomicInteger> entry : admitted.entrySet()) {
+            int count = entry.getValue().get();
+            assertTrue(count <= LIMIT, "window " + entry.getKey() + " admitted " + count);
+            if (count == LIMIT) {
+                full++;
+            }
+        }
+        assertTrue(full > windows / 2, "full windows: " + full);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.utils.ratelimitutils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用可控时钟验证按容量淘汰、空闲清理、重建和命中统计
+ */
+class KeyedRateLimiterTest {
+    private static final long IDLE = TimeUnit.MINUTES.toNanos(1);
+
+    private long now;
+
+    private KeyedRateLimiter limiter(PackedRateLimitAlgorithm algorithm, int maxKeys) {
+        return new KeyedRateLimiter(algorithm, maxKeys, IDLE, TimeUnit.NANOSECONDS, () -> now);
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        KeyedRateLimiter limiter = limiter(PackedRateLimitAlgorithm.tokenBucket(1, 2), 1000);
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a"));
+        assertFalse(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("b"));
+        assertEquals(2, limiter.getMissCount());
+        assertEquals(2, limiter.getHitCount());
+        assertEquals(0, limiter.getEvictionCount());
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    void sizeStaysBoundedUnderKeyChurn() {
+        // 64 段，每段最多 10 个 key
+        KeyedRateLimiter limiter = limiter(PackedRateLimitAlgorithm.tokenBucket(1, 1), 640);
+        for (int i = 0; i < 100_000; i++) {
+            now++;
+            limiter.tryAcquire("ip:" + i);
+        }
+        assertTrue(limiter.size() <= 640, "size: " + limiter.size());
+        assertEquals(100_000, limiter.getMissCount());
+        assertEquals(0, limiter.getHitCount());
+        assertEquals(limiter.getMissCount() - limiter.size(), limiter.getEvictionCount());
+    }
+
+    @Test
+    void hotKeyKeepsItsStateThroughEvictionsAndRebuilds() {
+        KeyedRateLimiter limiter = limiter(PackedRateLimitAlgorithm.tokenBucket(0.001, 2), 640);
+        assertTrue(limiter.tryAcquire("hot"));
+        assertTrue(limiter.tryAcquire("hot"));
+        // 大量新 key 让各段反复淘汰、积累墓碑并重建；hot 每轮都被访问，始终是最近访问的
+        for (int i = 0; i < 100_000; i++) {
+            now++;
+            assertFalse(limiter.tryAcquire("hot"), "hot key was reset at iteration " + i);
+            limiter.tryAcquire("ip:" + i);
+        }
+        assertTrue(limiter.getRetryAfterMillis("hot") > 0);
+    }
+
+    @Test
+    void idleKeysAreSweptAndStartFresh() {
+        KeyedRateLimiter limiter = limiter(PackedRateLimitAlgorithm.tokenBucket(0.001, 1), 1000);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire("user:" + i));
+        }
+        assertFalse(limiter.tryAcquire("user:0"));
+        now += IDLE / 2;
+        assertEquals(0, limiter.evictIdle());
+        now += IDLE;
+        assertEquals(100, limiter.evictIdle());
+        assertEquals(0, limiter.size());
+        assertEquals(100, limiter.getEvictionCount());
+        // 清理后重新建桶，按初始状态计算
+        assertTrue(limiter.tryAcquire("user:0"));
+        assertEquals(101, limiter.getMissCount());
+    }
+}
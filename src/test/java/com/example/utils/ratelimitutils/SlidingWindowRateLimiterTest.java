@@ -0,0 +1,103 @@
+package com.example.utils.ratelimitutils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用可控时钟比较日志模式与计数模式的精度
+ */
+class SlidingWindowRateLimiterTest {
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+    private static final int LIMIT = 100;
+    private static final int BUCKETS = 10;
+
+    private long now;
+
+    @Test
+    void logModeIsExactAcrossWindowBoundary() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(LIMIT, WINDOW, 0, () -> now);
+        now = WINDOW - 1;
+        for (int i = 0; i < LIMIT; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        // 固定窗口在这里会放行第二批，滑动窗口不会
+        now = WINDOW + 1;
+        assertFalse(limiter.tryAcquire());
+        now = 2 * WINDOW;
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void counterModeInterpolatesOldestBucket() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(LIMIT, WINDOW, BUCKETS, () -> now);
+        now = 0;
+        for (int i = 0; i < LIMIT; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        // 第一个子窗口滑出一半，估算值为 50
+        now = WINDOW + WINDOW / BUCKETS / 2;
+        assertEquals(50, limiter.currentCount());
+        int allowed = 0;
+        while (limiter.tryAcquire()) {
+            allowed++;
+        }
+        assertEquals(50, allowed);
+    }
+
+    /**
+     * 随机流量下统计任意一秒内的实际放行数：日志模式从不超过 limit，
+     * 计数模式最多超出一个子窗口的量（limit / buckets），长期吞吐两者一致
+     */
+    @Test
+    void accuracyTradeoffUnderRandomTraffic() {
+        List<Long> logAllowed = run(0);
+        List<Long> counterAllowed = run(BUCKETS);
+
+        assertTrue(maxInAnyWindow(logAllowed) <= LIMIT);
+        int counterMax = maxInAnyWindow(counterAllowed);
+        assertTrue(counterMax <= LIMIT + LIMIT / BUCKETS, "max in window: " + counterMax);
+
+        // 20 秒内的放行数都接近 20 * limit
+        assertTrue(Math.abs(logAllowed.size() - 20 * LIMIT) <= LIMIT);
+        assertTrue(Math.abs(counterAllowed.size() - 20 * LIMIT) <= 2 * LIMIT);
+    }
+
+    private List<Long> run(int buckets) {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(LIMIT, WINDOW, buckets, () -> now);
+        Random random = new Random(42);
+        List<Long> allowed = new ArrayList<>();
+        now = 0;
+        while (now < 20 * WINDOW) {
+            // 平均每秒约 400 个请求，成簇到达
+            now += (long) (random.nextDouble() * random.nextDouble() * WINDOW / 200);
+            if (limiter.tryAcquire()) {
+                allowed.add(now);
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * 任意长度为 WINDOW 的区间 (t - WINDOW, t] 内的最大放行数
+     */
+    private static int maxInAnyWindow(List<Long> allowed) {
+        int max = 0;
+        int start = 0;
+        for (int end = 0; end < allowed.size(); end++) {
+            while (allowed.get(end) - allowed.get(start) >= WINDOW) {
+                start++;
+            }
+            max = Math.max(max, end - start + 1);
+        }
+        return max;
+    }
+}
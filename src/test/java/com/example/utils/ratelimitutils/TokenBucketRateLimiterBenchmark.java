@@ -0,0 +1,73 @@
+package com.example.utils.ratelimitutils;
+
+import com.example.utils.ThroughputBenchmark;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 无锁令牌桶与原 synchronized 实现的吞吐对比
+ * 按线程数 1, 2, 4 ... 可用核数（或参数指定的最大线程数）测量 tryAcquire 吞吐（次/毫秒），每轮先预热；
+ * 速率设为每秒 1e9 个，使绝大多数调用都走成功并修改状态的路径，这是竞争最激烈的情况。
+ *
+ * synchronized 版本在多核下所有线程串行通过同一个监视器，竞争时膨胀为重量级锁并挂起线程；
+ * CAS 版本冲突时只重试一次比较交换，拒绝路径只读不写。
+ * 扩展性只有在多核机器上才能体现，以在目标机器上运行本类的输出为准。
+ */
+public class TokenBucketRateLimiterBenchmark {
+
+    private static final int OPS_PER_THREAD = 5_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        // 默认测到可用核数，也可以通过参数指定最大线程数
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        System.out.println("threads, cas ops/ms, synchronized ops/ms");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            TokenBucketRateLimiter cas = TokenBucketRateLimiter.create(1e9, 1_000_000);
+            SynchronizedTokenBucket synchronizedBucket = new SynchronizedTokenBucket(1_000_000, 1_000_000);
+            // 预热
+            throughput(cas::tryAcquire, threads);
+            throughput(synchronizedBucket::tryAcquire, threads);
+            System.out.printf("%d, %d, %d%n", threads,
+                    throughput(cas::tryAcquire, threads),
+                    throughput(synchronizedBucket::tryAcquire, threads));
+        }
+    }
+
+    /**
+     * 多线程调用吞吐（次/毫秒）
+     */
+    private static long throughput(BooleanSupplier limiter, int threads) throws InterruptedException {
+        return ThroughputBenchmark.opsPerMillis(threads, OPS_PER_THREAD, (thread, i) -> limiter.getAsBoolean());
+    }
+
+    /**
+     * 原实现：synchronized + currentTimeMillis，作为对照
+     */
+    private static class SynchronizedTokenBucket {
+        private final long capacity;
+        private final long rate;
+        private long tokens;
+        private long lastRefillTime;
+
+        SynchronizedTokenBucket(long capacity, long rate) {
+            this.capacity = capacity;
+            this.rate = rate;
+            this.tokens = capacity;
+            this.lastRefillTime = System.currentTimeMillis();
+        }
+
+        synchronized boolean tryAcquire() {
+            long currentTime = System.currentTimeMillis();
+            long refilled = (currentTime - lastRefillTime) * rate;
+            if (refilled > 0) {
+                tokens = Math.min(capacity, tokens + refilled);
+                lastRefillTime = currentTime;
+            }
+            if (tokens > 0) {
+                tokens--;
+                return true;
+            }
+            return false;
+        }
+    }
+}